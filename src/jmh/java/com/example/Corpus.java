@@ -0,0 +1,23 @@
+package com.example;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Deterministic sample inputs for the benchmarks.
+ */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    /**
+     * @param length The number of characters.
+     * @return Base64 text of exactly {@code length} characters.
+     */
+    static String base64(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes).substring(0, length);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KeystrokeStrategy#simulateTyping(String)} end to end, compile and replay, into a recording backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EndToEndBenchmark {
+
+    @Param({"64", "65536"})
+    public int length;
+
+    private String text;
+    private KeystrokePlan plan;
+    private RecordingKeystroke keyCodes;
+    private RecordingKeystroke unicode;
+
+    @Setup
+    public void setUp() {
+        text = Corpus.base64(length);
+        keyCodes = new RecordingKeystroke(1 << 16, KeystrokeCompiler.KEY_CODES);
+        unicode = new RecordingKeystroke(1 << 16, KeystrokeCompiler.UNICODE);
+        plan = keyCodes.compile(text);
+    }
+
+    @Benchmark
+    public int simulateTyping() {
+        keyCodes.simulateTyping(text);
+        return keyCodes.last();
+    }
+
+    @Benchmark
+    public int simulateTypingUnicode() {
+        unicode.simulateTyping(text);
+        return unicode.last();
+    }
+
+    @Benchmark
+    public int replayOnly() {
+        keyCodes.replay(plan);
+        return keyCodes.last();
+    }
+}
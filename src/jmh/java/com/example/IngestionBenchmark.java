@@ -0,0 +1,118 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading input and typing it into a recording backend, for each way the tool can ingest text. The
+ * {@code readAllLines} and {@code stdinReadAllBytes} cases reproduce how {@code --file} and standard input were read
+ * before streaming; {@code legacyByteCast} reproduces the read loop of
+ * {@code TextToKeyStroke.sendFileAsKeystrokes}, which has no backend to type into.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestionBenchmark {
+
+    @Param({"65536", "4194304"})
+    public int size;
+
+    private Path file;
+    private RecordingKeystroke recorder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder text = new StringBuilder(Corpus.base64(size));
+        for (int i = 76; i < text.length(); i += 77) text.setCharAt(i, '\n'); // MIME-style lines
+        file = Files.createTempFile("ingestion", ".txt");
+        Files.writeString(file, text);
+        recorder = new RecordingKeystroke(1 << 16, KeystrokeCompiler.KEY_CODES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long readAllLines() throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        recorder.simulateTyping(String.join("\n", lines));
+        return recorder.recorded();
+    }
+
+    @Benchmark
+    public long stdinReadAllBytes() throws IOException {
+        try (InputStream in = new FileInputStream(file.toFile())) {
+            recorder.simulateTyping(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        return recorder.recorded();
+    }
+
+    @Benchmark
+    public long streamedChannel() throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            recorder.simulateTyping(channel);
+        }
+        return recorder.recorded();
+    }
+
+    @Benchmark
+    public long streamedStdin() throws IOException {
+        try (InputStream in = new FileInputStream(file.toFile())) {
+            recorder.simulateTyping(Channels.newChannel(in));
+        }
+        return recorder.recorded();
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            StreamingInput.typeMapped(recorder, channel, StreamingInput.MAPPED_WINDOW_SIZE);
+        }
+        return recorder.recorded();
+    }
+
+    @Benchmark
+    public long mappedParallel() throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            ParallelInput.plan(recorder.compiler(), channel, pool, ParallelInput.defaultWindow(pool), recorder::replay);
+        }
+        return recorder.recorded();
+    }
+
+    @Benchmark
+    public void legacyByteCast(Blackhole blackhole) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file.toFile())) {
+            byte[] buffer = new byte[1024];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                for (int i = 0; i < bytesRead; i++) {
+                    blackhole.consume(KeyLayout.US.lookup((char) buffer[i]));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Character to key code mapping: the layout table against the platform lookup it replaced, and full compilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KeyMappingBenchmark {
+
+    private static final int LENGTH = 4096;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Corpus.base64(LENGTH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int layoutLookup() {
+        int sum = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            sum += KeyLayout.US.lookup(text.charAt(i));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int extendedKeyCodeLookup() {
+        int sum = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char character = text.charAt(i);
+            sum += KeyEvent.getExtendedKeyCodeForChar(character);
+            if (Character.isUpperCase(character) || "+*?\"".indexOf(character) >= 0) sum++;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public KeystrokePlan compile() {
+        return KeystrokeCompiler.KEY_CODES.compile(text);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example;
+
+/**
+ * Keystroke strategy that records events into a preallocated ring buffer instead of sending them to the OS, so
+ * benchmarks measure the pipeline alone and run headless.
+ */
+public class RecordingKeystroke implements KeystrokeStrategy {
+
+    private final int[] ring;
+    private final int mask;
+    private final KeystrokeCompiler compiler;
+    private final Pacer pacer = Pacer.unpaced();
+    private final KeyEventBatch batch = new KeyEventBatch();
+    private long recorded;
+
+    /**
+     * @param capacity The ring size, rounded up to a power of two.
+     * @param compiler The compiler producing the recorded events.
+     */
+    public RecordingKeystroke(int capacity, KeystrokeCompiler compiler) {
+        this.ring = new int[Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1];
+        this.mask = ring.length - 1;
+        this.compiler = compiler;
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
+    @Override
+    public void replay(KeystrokePlan plan) {
+        try {
+            KeyEventBatch.replay(this, plan, pacer, batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void dispatchEvent(int event) {
+        ring[(int) (recorded++ & mask)] = event;
+    }
+
+    /**
+     * @return The number of events recorded so far.
+     */
+    public long recorded() {
+        return recorded;
+    }
+
+    /**
+     * @return The most recently recorded event, for benchmarks to consume.
+     */
+    public int last() {
+        return ring[(int) ((recorded - 1) & mask)];
+    }
+}
@@ -0,0 +1,151 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Pacer that searches for the fastest rate the target keeps up with, using AIMD control like TCP congestion
+ * control.
+ * <p>
+ * Typing starts at the initial rate. After every {@link #PROBE_WINDOW} characters the {@link Feedback} is asked
+ * whether the target is falling behind: if not, the rate grows by {@link #ADDITIVE_INCREASE}; if so, it is cut by
+ * {@link #MULTIPLICATIVE_DECREASE}. The rate it last fell back to is the {@link #learnedRate()}, a good starting
+ * point for the next run against the same target. Without feedback the pacer keeps its initial rate.
+ * <p>
+ * The only signal is a round trip through the backend. A backlog in the target's event queue shows up there too,
+ * since {@link java.awt.Robot#waitForIdle()} and {@code XSync} both wait for the queued events to be processed.
+ */
+public class AdaptivePacer extends Pacer {
+
+    /**
+     * Starting rate, in characters per second, when nothing has been learned about the target yet.
+     */
+    public static final double DEFAULT_START_RATE = 500;
+    static final double MIN_RATE = 5;
+    static final double MAX_RATE = 2000;
+    static final double ADDITIVE_INCREASE = 10;
+    static final double MULTIPLICATIVE_DECREASE = 0.5;
+    /**
+     * Number of characters typed between two feedback checks.
+     */
+    static final int PROBE_WINDOW = 16;
+
+    /**
+     * Tells whether the target is falling behind.
+     */
+    @FunctionalInterface
+    public interface Feedback {
+
+        /**
+         * @param typedCharacters The number of characters typed so far.
+         * @return True if the target shows signs of congestion.
+         */
+        boolean congested(long typedCharacters);
+
+        /**
+         * Congestion when a synchronization round trip, such as {@link KeystrokeStrategy#syncNanos()}, takes well
+         * over the fastest one seen.
+         *
+         * @param roundTrip Performs one round trip and returns its duration in nanoseconds.
+         */
+        static Feedback roundTrip(LongSupplier roundTrip) {
+            return new RoundTripFeedback(roundTrip);
+        }
+    }
+
+    private Feedback feedback;
+    private double rate;
+    private double learnedRate;
+    private boolean cut;
+    private long nextProbe = PROBE_WINDOW;
+
+    /**
+     * @param startRate The rate to start at, in characters per second.
+     */
+    public AdaptivePacer(double startRate) {
+        super(intervalFor(clamp(startRate)));
+        this.rate = clamp(startRate);
+        this.learnedRate = rate;
+    }
+
+    public void feedback(Feedback feedback) {
+        this.feedback = feedback;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        nextProbe = PROBE_WINDOW;
+    }
+
+    @Override
+    public void pace() throws InterruptedException {
+        super.pace();
+        if (feedback != null && ticks() >= nextProbe) {
+            nextProbe = ticks() + PROBE_WINDOW;
+            adjust(feedback.congested(ticks()));
+        }
+    }
+
+    void adjust(boolean congested) {
+        if (congested) {
+            rate = clamp(rate * MULTIPLICATIVE_DECREASE);
+            learnedRate = rate;
+            cut = true;
+        } else {
+            rate = clamp(rate + ADDITIVE_INCREASE);
+            if (!cut) learnedRate = rate;
+        }
+        setIntervalNanos(intervalFor(rate));
+    }
+
+    /**
+     * @return The current rate, in characters per second.
+     */
+    public double rate() {
+        return rate;
+    }
+
+    /**
+     * @return The rate after the last congestion cut, or the current rate if the target never fell behind.
+     */
+    public double learnedRate() {
+        return learnedRate;
+    }
+
+    @Override
+    public String report() {
+        return String.format("%s, learned rate %.1f cps", super.report(), learnedRate);
+    }
+
+    private static double clamp(double rate) {
+        return Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+    }
+
+    private static long intervalFor(double rate) {
+        return Math.round(TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    /**
+     * Compares each round trip with the fastest seen so far, so the signal adapts to the target's normal latency.
+     */
+    private static final class RoundTripFeedback implements Feedback {
+
+        static final int CONGESTION_FACTOR = 3;
+        static final long CONGESTION_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final LongSupplier roundTrip;
+        private long baseline = Long.MAX_VALUE;
+
+        RoundTripFeedback(LongSupplier roundTrip) {
+            this.roundTrip = roundTrip;
+        }
+
+        @Override
+        public boolean congested(long typedCharacters) {
+            long nanos = roundTrip.getAsLong();
+            baseline = Math.min(baseline, nanos);
+            return nanos > Math.max(baseline * CONGESTION_FACTOR, baseline + CONGESTION_SLACK_NANOS);
+        }
+    }
+}
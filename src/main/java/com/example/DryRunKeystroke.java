@@ -0,0 +1,177 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Backend that types nothing and predicts what a job would cost: the events it posts, the modifier toggles among
+ * them, the characters the layout cannot type, and how long it takes at the pacer's rate.
+ * <p>
+ * Input goes through the whole pipeline, decoding, key mapping for the layout and the typing engine, but replay only
+ * counts the events of each plan and advances a modeled clock by one pacer interval per character instead of
+ * waiting, so a corpus of hundreds of MB is estimated in about the time it takes to compile it. The prediction
+ * assumes the target keeps up, as the pacer's schedule does; a macro's recorded timestamps are followed as they
+ * change the interval.
+ */
+public class DryRunKeystroke implements KeystrokeStrategy {
+
+    private final Pacer pacer;
+    private final CountingCompiler compiler;
+    private final long startNanos = System.nanoTime();
+    private long characters;
+    private KeystrokeCompiler modifiers;
+    private long presses;
+    private long releases;
+    private long unicode;
+    private long modifierToggles;
+    private long modeledNanos;
+
+    /**
+     * Registers this backend as {@code --dry-run}.
+     */
+    public static class Provider implements KeystrokeStrategyProvider {
+        @Override
+        public String name() {
+            return "dry-run";
+        }
+
+        @Override
+        public String description() {
+            return "Type nothing: count the events and predict the time at the given --delay or --rate.";
+        }
+
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout) {
+            return new DryRunKeystroke(pacer, layout);
+        }
+
+        @Override
+        public KeystrokeCompiler compiler(KeyLayout layout, String target) {
+            return KeystrokeCompiler.forLayout(layout);
+        }
+
+        /**
+         * Any target is accepted, so a multi-target run can be estimated as well.
+         */
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout, String target) {
+            return create(pacer, layout);
+        }
+    }
+
+    /**
+     * @param pacer  The pacer whose interval the clock advances by, per character.
+     * @param layout The keyboard layout of the target.
+     */
+    public DryRunKeystroke(Pacer pacer, KeyLayout layout) {
+        this.pacer = pacer;
+        this.compiler = new CountingCompiler(layout);
+        this.modifiers = compiler;
+    }
+
+    /**
+     * Recognizes Shift and AltGr by the key codes of another backend, whose macro is replayed. Key codes mean
+     * different keys on different backends; an XTest Shift is an AWT 2, for one.
+     *
+     * @param compiler The compiler of the backend the replayed events were compiled for.
+     */
+    public void countModifiersOf(KeystrokeCompiler compiler) {
+        this.modifiers = compiler;
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
+    @Override
+    public void replay(KeystrokePlan plan) {
+        int shift = modifiers.shiftKeyCode();
+        int altGraph = modifiers.altGraphKeyCode();
+        long pressed = 0;
+        long released = 0;
+        long typed = 0;
+        long toggles = 0;
+        for (int event : plan.events()) {
+            int op = KeystrokePlan.op(event);
+            if (op == KeystrokePlan.OP_UNICODE) {
+                typed++;
+                continue;
+            }
+            if (op == KeystrokePlan.OP_PRESS) {
+                pressed++;
+            } else if (op == KeystrokePlan.OP_RELEASE) {
+                released++;
+            } else {
+                continue;
+            }
+            int operand = KeystrokePlan.operand(event);
+            if (operand == shift || operand == altGraph) toggles++;
+        }
+        presses += pressed;
+        releases += released;
+        unicode += typed;
+        modifierToggles += toggles;
+        characters += plan.characterCount();
+        modeledNanos += plan.characterCount() * pacer.intervalNanos();
+    }
+
+    @Override
+    public void dispatchEvent(int event) {
+        replay(new KeystrokePlan.Builder(1).add(event).build());
+    }
+
+    public long characters() {
+        return characters;
+    }
+
+    public long events() {
+        return presses + releases + unicode;
+    }
+
+    public long modifierToggles() {
+        return modifierToggles;
+    }
+
+    public long unmappable() {
+        return compiler.unmappable.sum();
+    }
+
+    /**
+     * @return The predicted time to type everything replayed so far, in nanoseconds.
+     */
+    public long predictedNanos() {
+        return modeledNanos;
+    }
+
+    /**
+     * @return The counts and the predicted time, one per line.
+     */
+    public String report() {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(modeledNanos);
+        String rate = pacer.intervalNanos() == 0 ? "unpaced" : String.format("%.1f cps", pacer.targetRate());
+        return String.format("Dry run: %d characters, %d events (%d presses, %d releases, %d Unicode), %d modifier toggles, %d unmappable characters%n"
+                        + "Predicted time: %d:%02d:%02d.%03d at %s (estimated in %d ms)",
+                characters, events(), presses, releases, unicode, modifierToggles, unmappable(),
+                seconds / 3600, seconds / 60 % 60, seconds % 60, TimeUnit.NANOSECONDS.toMillis(modeledNanos) % 1000, rate,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * The layout's key code compiler, also counting the characters it cannot type. Compiling may run on several
+     * threads, so the count is a {@link LongAdder}.
+     */
+    private static final class CountingCompiler extends KeystrokeCompiler {
+        final LongAdder unmappable = new LongAdder();
+
+        CountingCompiler(KeyLayout layout) {
+            super(layout);
+        }
+
+        @Override
+        protected void skipped() {
+            unmappable.increment();
+            super.skipped();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example;
+
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.event.KeyEvent;
+
+/**
+ * Pastes long runs of plain text through the clipboard and types everything else through another backend.
+ * <p>
+ * Runs of at least {@link #MIN_PASTE_LENGTH} printable characters (line breaks included) are put on the clipboard
+ * in chunks and pasted with Ctrl+V, or Cmd+V on macOS. The shortcut is pressed through the wrapped backend, with
+ * the key codes its compiler resolves for the active layout, so it reaches the same target as the typed keys.
+ * Control keys such as Tab, Backspace and Escape, and short fragments between them, are typed as usual, since a
+ * paste would not have the same effect. Each paste waits for the key events typed before it and then gives the
+ * target time to read the clipboard before it is overwritten. When the pacer is paced, a whole paste counts as one
+ * keystroke.
+ */
+public class HybridKeystroke implements KeystrokeStrategy {
+
+    /**
+     * Default longest text put on the clipboard at once. Streamed input is compiled one chunk at a time, so it
+     * never pastes more than {@link StreamingInput#CHUNK_SIZE} characters at once either way.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = StreamingInput.CHUNK_SIZE;
+    /**
+     * Shortest run of plain text worth a paste; shorter runs are typed.
+     */
+    static final int MIN_PASTE_LENGTH = 16;
+    /**
+     * Time the target gets to read the clipboard after a paste.
+     */
+    static final int PASTE_SETTLE_MILLIS = 100;
+
+    private final KeystrokeStrategy keys;
+    private final Pacer pacer;
+    private final Clipboard clipboard;
+    private final boolean restoreClipboard;
+    private final int[] pasteChord;
+    private final KeystrokeCompiler compiler;
+    private final KeyEventBatch batch = new KeyEventBatch();
+    private final KeyEventBatch typed = new KeyEventBatch();
+
+    /**
+     * Pastes through the system clipboard.
+     */
+    public HybridKeystroke(KeystrokeStrategy keys, Pacer pacer, int chunkSize, boolean restoreClipboard) {
+        this(keys, pacer, chunkSize, restoreClipboard, Toolkit.getDefaultToolkit().getSystemClipboard());
+    }
+
+    /**
+     * @param keys             The backend typing everything that is not pasted.
+     * @param pacer            The pacer scheduling the keystrokes and pastes.
+     * @param chunkSize        The longest text pasted at once.
+     * @param restoreClipboard True to put the clipboard's previous contents back after each plan.
+     * @param clipboard        The clipboard to paste through, for example a local one under test.
+     * @throws IllegalArgumentException If the backend cannot press the paste shortcut, such as a Unicode backend.
+     */
+    public HybridKeystroke(KeystrokeStrategy keys, Pacer pacer, int chunkSize, boolean restoreClipboard, Clipboard clipboard) {
+        if (chunkSize < MIN_PASTE_LENGTH) {
+            throw new IllegalArgumentException("Paste chunk size must be at least " + MIN_PASTE_LENGTH + ": " + chunkSize);
+        }
+        this.keys = keys;
+        this.pacer = pacer;
+        this.clipboard = clipboard;
+        this.restoreClipboard = restoreClipboard;
+        this.pasteChord = pasteChord(keys.compiler());
+        this.compiler = new PasteCompiler(keys.compiler(), chunkSize);
+    }
+
+    /**
+     * @return The press and release events of Ctrl+V, or Cmd+V on macOS, in the backend's key codes.
+     */
+    static int[] pasteChord(KeystrokeCompiler keys) {
+        int modifier = keys.keyCodeFor(System.getProperty("os.name").startsWith("Mac") ? KeyEvent.VK_META : KeyEvent.VK_CONTROL);
+        int v = keys.keyCodeFor(KeyEvent.VK_V);
+        if (modifier < 0 || v < 0) throw new IllegalArgumentException("The backend cannot press the paste shortcut, so it cannot be combined with --paste.");
+        return new int[]{
+                KeystrokePlan.OP_PRESS | modifier, KeystrokePlan.OP_PRESS | v,
+                KeystrokePlan.OP_RELEASE | v, KeystrokePlan.OP_RELEASE | modifier
+        };
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
+    @Override
+    public void replay(KeystrokePlan plan) {
+        Transferable saved = restoreClipboard ? savedContents() : null;
+        try {
+            KeyEventBatch.replay(this, plan, pacer, batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (saved != null) clipboard.setContents(saved, null);
+        }
+    }
+
+    @Override
+    public void startJob() {
+        pacer.start();
+        keys.startJob();
+    }
+
+    @Override
+    public void endJob() {
+        keys.endJob();
+    }
+
+    @Override
+    public boolean hasFeedback() {
+        return keys.hasFeedback();
+    }
+
+    @Override
+    public long syncNanos() {
+        return keys.syncNanos();
+    }
+
+    @Override
+    public void dispatchEvent(int event) {
+        keys.dispatchEvent(event); // Only key events are posted one at a time; pastes always arrive in a batch
+    }
+
+    /**
+     * Hands runs of key events to the typing backend and performs the pastes between them.
+     */
+    @Override
+    public void dispatch(KeyEventBatch events) {
+        int start = 0;
+        for (int i = 0; i < events.size(); i++) {
+            int event = events.event(i);
+            if (KeystrokePlan.op(event) != KeystrokePlan.OP_PASTE) continue;
+            if (i > start) keys.dispatch(events.range(start, i, typed));
+            paste(events.paste(event));
+            start = i + 1;
+        }
+        if (start < events.size()) keys.dispatch(events.range(start, events.size(), typed));
+    }
+
+    private void paste(String text) {
+        keys.syncNanos(); // Let the keys typed so far land before the paste
+        clipboard.setContents(new StringSelection(text), null);
+        for (int event : pasteChord) {
+            keys.dispatchEvent(event);
+        }
+        keys.syncNanos();
+        try {
+            Thread.sleep(PASTE_SETTLE_MILLIS); // The target reads the clipboard asynchronously
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Cancelled; replay stops at its next pace
+        }
+    }
+
+    private Transferable savedContents() {
+        try {
+            return clipboard.getContents(null);
+        } catch (IllegalStateException e) {
+            System.err.println("Clipboard unavailable, its contents will not be restored: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compiles pasteable runs into paste events and everything else with the typing backend's compiler.
+     */
+    static final class PasteCompiler extends KeystrokeCompiler {
+
+        private final KeystrokeCompiler keys;
+        private final int chunkSize;
+
+        PasteCompiler(KeystrokeCompiler keys, int chunkSize) {
+            super(keys.layout());
+            this.keys = keys;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public void compile(CharSequence text, int start, int end, KeystrokePlan.Builder builder) {
+            int i = start;
+            while (i < end) {
+                int runStart = nextPasteRun(text, i, end);
+                if (runStart > i) keys.compile(text, i, runStart, builder);
+                if (runStart == end) return;
+                if (builder.afterCarriageReturn() && text.charAt(runStart) == '\n') {
+                    keys.compile(text, runStart, ++runStart, builder); // Typed with the carriage return before it
+                }
+
+                int runEnd = runStart;
+                while (runEnd < end && pasteable(text.charAt(runEnd))) runEnd++;
+                keys.finish(builder); // Held modifiers would turn the paste shortcut into another one
+                for (int chunk = runStart; chunk < runEnd; ) {
+                    int chunkEnd = Math.min(chunk + chunkSize, runEnd);
+                    if (chunkEnd < runEnd && Character.isHighSurrogate(text.charAt(chunkEnd - 1))) chunkEnd--; // Keep pairs together
+                    builder.paste(text.subSequence(chunk, chunkEnd).toString());
+                    chunk = chunkEnd;
+                }
+                builder.afterCarriageReturn(false);
+                i = runEnd;
+            }
+        }
+
+        @Override
+        public void reset() {
+            keys.reset();
+        }
+
+        @Override
+        public void end(KeystrokePlan.Builder builder) {
+            keys.end(builder);
+        }
+
+        @Override
+        public void finish(KeystrokePlan.Builder builder) {
+            keys.finish(builder);
+        }
+
+        @Override
+        protected int keyCodeFor(int awtKeyCode) {
+            return keys.keyCodeFor(awtKeyCode);
+        }
+
+        @Override
+        public String keymap() {
+            return keys.keymap();
+        }
+
+        /**
+         * @return The start of the first run of at least {@link #MIN_PASTE_LENGTH} pasteable characters, or end.
+         */
+        private static int nextPasteRun(CharSequence text, int from, int end) {
+            int runStart = from;
+            for (int i = from; i < end; i++) {
+                if (!pasteable(text.charAt(i))) {
+                    runStart = i + 1;
+                } else if (i + 1 - runStart >= MIN_PASTE_LENGTH) {
+                    return runStart;
+                }
+            }
+            return end;
+        }
+
+        private static boolean pasteable(char c) {
+            return c == '\n' || !Character.isISOControl(c);
+        }
+    }
+}
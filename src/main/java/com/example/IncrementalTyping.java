@@ -0,0 +1,345 @@
+package com.example;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Retypes only what changed since the last payload sent to a named target, such as a config file re-sent into the
+ * same editor after a small edit.
+ * <p>
+ * The last payload is kept per target in {@link #DEFAULT_DIRECTORY}. The new text is compared to it line by line
+ * with Myers' diff, after trimming the common prefix and suffix, and the differences are turned into an edit
+ * script: Ctrl+Home to the start of the document, Down to skip unchanged lines, Shift+Down and Delete to remove
+ * lines, and Left, Enter and the new lines to open them after the line above, then Right back to the start of the
+ * next line. The cursor is at the start of a line before every Down and Shift+Down, and a line break is never typed
+ * in front of existing text, where an auto-indenting editor would indent it. The editor must hold exactly the last
+ * payload, and the first run for a target must start from an empty document. macOS editors bind other keys to
+ * these moves, so the edit script is only compiled for other systems.
+ */
+public final class IncrementalTyping {
+
+    /**
+     * Default location of the payloads: {@code ~/.texttokeystroke/payloads}.
+     */
+    public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".texttokeystroke", "payloads");
+    /**
+     * Most changed lines diffed exactly; beyond that the changed region is deleted and retyped as a whole, which
+     * keeps the diff's memory bounded.
+     */
+    static final int MAX_EDIT_DISTANCE = 2048;
+    /**
+     * Number of navigation keys sent per paced character, so skipping thousands of lines takes seconds.
+     */
+    static final int NAVIGATION_BURST = 32;
+
+    private static final Pattern TARGET_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final int[] EDITING_KEYS = {KeyEvent.VK_CONTROL, KeyEvent.VK_SHIFT, KeyEvent.VK_HOME, KeyEvent.VK_DOWN,
+            KeyEvent.VK_END, KeyEvent.VK_DELETE, KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT};
+
+    enum Kind { KEEP, DELETE, INSERT }
+
+    /**
+     * A run of lines kept or deleted from the old text, or inserted from the new one.
+     */
+    record Edit(Kind kind, int oldStart, int newStart, int count) {
+    }
+
+    private final Path file;
+    private final String previous;
+    private long kept;
+    private long deleted;
+    private long inserted;
+    private long navigationKeys;
+
+    private IncrementalTyping(Path file, String previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    /**
+     * @param directory Where the payloads are kept.
+     * @param target    The name of the target, made of letters, digits, dots, dashes and underscores.
+     * @return The incremental state of the target, with no previous payload if none was saved.
+     * @throws IOException If the saved payload cannot be read.
+     */
+    public static IncrementalTyping load(Path directory, String target) throws IOException {
+        if (!TARGET_NAME.matcher(target).matches()) throw new IllegalArgumentException("Invalid target name: " + target);
+        Path file = directory.resolve(target + ".txt");
+        return new IncrementalTyping(file, Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : "");
+    }
+
+    /**
+     * @return The last payload sent to the target, empty before the first run.
+     */
+    public String previous() {
+        return previous;
+    }
+
+    /**
+     * Compiles the edit script turning the previous payload into the text.
+     *
+     * @param compiler The compiler of the backend.
+     * @param text     The new payload.
+     * @return The plan, empty when nothing changed.
+     * @throws IllegalArgumentException If lines must be skipped or deleted and the backend cannot press the keys, or
+     *                                  this is macOS.
+     */
+    public KeystrokePlan plan(KeystrokeCompiler compiler, String text) {
+        List<String> oldLines = lines(previous);
+        List<String> newLines = lines(text);
+        List<Edit> edits = diff(oldLines, newLines);
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(64);
+        if (edits.size() == 1 && edits.get(0).kind() == Kind.INSERT) { // Nothing to navigate, as on the first run
+            inserted += newLines.size();
+            compiler.compile(text, 0, text.length(), builder);
+            compiler.end(builder);
+            compiler.finish(builder);
+            return builder.build();
+        }
+        if (edits.stream().allMatch(edit -> edit.kind() == Kind.KEEP)) {
+            kept += oldLines.size();
+            return builder.build();
+        }
+        if (System.getProperty("os.name").startsWith("Mac")) {
+            throw new IllegalArgumentException("Incremental typing needs the Ctrl+Home and End bindings of Windows and Linux editors.");
+        }
+        for (int key : EDITING_KEYS) {
+            if (compiler.keyCodeFor(key) < 0) {
+                throw new IllegalArgumentException("The backend cannot press the navigation keys incremental typing needs.");
+            }
+        }
+
+        chord(compiler, KeyEvent.VK_CONTROL, KeyEvent.VK_HOME, builder);
+        int skip = 0;
+        StringBuilder insertion = new StringBuilder();
+        for (Edit edit : edits) {
+            switch (edit.kind()) {
+                case KEEP -> {
+                    skip += edit.count();
+                    kept += edit.count();
+                }
+                case DELETE -> {
+                    tap(compiler, KeyEvent.VK_DOWN, skip, builder);
+                    skip = 0;
+                    int last = edit.oldStart() + edit.count() - 1;
+                    boolean finalLine = !oldLines.get(last).endsWith("\n"); // No line break to select up to
+                    int shift = compiler.keyCodeFor(KeyEvent.VK_SHIFT);
+                    builder.press(shift);
+                    tap(compiler, KeyEvent.VK_DOWN, finalLine ? edit.count() - 1 : edit.count(), builder);
+                    if (finalLine) tap(compiler, KeyEvent.VK_END, 1, builder);
+                    builder.release(shift);
+                    tap(compiler, KeyEvent.VK_DELETE, 1, builder);
+                    deleted += edit.count();
+                }
+                case INSERT -> {
+                    tap(compiler, KeyEvent.VK_DOWN, skip, builder);
+                    skip = 0;
+                    insertion.setLength(0);
+                    for (int i = edit.newStart(); i < edit.newStart() + edit.count(); i++) {
+                        insertion.append(newLines.get(i));
+                    }
+                    boolean linesFollow = edit.oldStart() < oldLines.size();
+                    if (linesFollow) {
+                        // Open the lines after the line above instead of pushing this one down, then type them
+                        int lineBreak = insertion.length() > 1 && insertion.charAt(insertion.length() - 2) == '\r' ? 2 : 1;
+                        insertion.setLength(insertion.length() - lineBreak);
+                        insertion.insert(0, '\n');
+                        if (edit.newStart() == 0) { // No line above: open an empty one first
+                            compiler.compile("\n", 0, 1, builder);
+                            insertion.deleteCharAt(0);
+                        }
+                        tap(compiler, KeyEvent.VK_LEFT, 1, builder);
+                    }
+                    compiler.compile(insertion, 0, insertion.length(), builder);
+                    compiler.end(builder);
+                    compiler.finish(builder);
+                    if (linesFollow) tap(compiler, KeyEvent.VK_RIGHT, 1, builder); // To the start of the next line
+                    inserted += edit.count();
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Presses a key while a modifier is held.
+     */
+    private void chord(KeystrokeCompiler compiler, int modifier, int key, KeystrokePlan.Builder builder) {
+        int modifierCode = compiler.keyCodeFor(modifier);
+        int keyCode = compiler.keyCodeFor(key);
+        compiler.finish(builder);
+        builder.press(modifierCode).press(keyCode).release(keyCode).release(modifierCode).endCharacter();
+        navigationKeys++;
+    }
+
+    /**
+     * Presses a key a number of times, {@link #NAVIGATION_BURST} presses per paced character.
+     */
+    private void tap(KeystrokeCompiler compiler, int key, int times, KeystrokePlan.Builder builder) {
+        int keyCode = compiler.keyCodeFor(key);
+        compiler.finish(builder);
+        for (int i = 1; i <= times; i++) {
+            builder.press(keyCode).release(keyCode);
+            if (i % NAVIGATION_BURST == 0 || i == times) builder.endCharacter();
+        }
+        navigationKeys += times;
+    }
+
+    /**
+     * Remembers the text as the target's last payload, once it has been typed.
+     */
+    public void save(String text) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = Paths.get(file + ".tmp");
+        Files.writeString(temporary, text, StandardCharsets.UTF_8);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Forgets the target's payload after typing stopped part way, when what the editor holds is no longer known.
+     */
+    public void forget() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * @return One line with the lines kept, deleted and inserted, and the navigation keys pressed.
+     */
+    public String report() {
+        return String.format("Incremental: %d lines kept, %d deleted, %d inserted, %d navigation keys",
+                kept, deleted, inserted, navigationKeys);
+    }
+
+    /**
+     * Splits text into lines, each with its line break; the last line has none unless the text ends with one.
+     */
+    static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', start)) {
+            lines.add(text.substring(start, i + 1));
+            start = i + 1;
+        }
+        if (start < text.length()) lines.add(text.substring(start));
+        return lines;
+    }
+
+    /**
+     * Line-level diff: runs of kept, deleted and inserted lines that turn {@code a} into {@code b}, in order.
+     */
+    static List<Edit> diff(List<String> a, List<String> b) {
+        int prefix = 0;
+        while (prefix < a.size() && prefix < b.size() && a.get(prefix).equals(b.get(prefix))) prefix++;
+        int suffix = 0;
+        while (suffix < a.size() - prefix && suffix < b.size() - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        // Compare the changed region by interned line ids instead of strings
+        Map<String, Integer> ids = new HashMap<>();
+        int[] x = new int[a.size() - prefix - suffix];
+        int[] y = new int[b.size() - prefix - suffix];
+        for (int i = 0; i < x.length; i++) x[i] = ids.computeIfAbsent(a.get(prefix + i), line -> ids.size());
+        for (int i = 0; i < y.length; i++) y[i] = ids.computeIfAbsent(b.get(prefix + i), line -> ids.size());
+
+        List<Edit> edits = new ArrayList<>();
+        append(edits, Kind.KEEP, 0, 0, prefix);
+        byte[] ops = myers(x, y);
+        int oldIndex = prefix;
+        int newIndex = prefix;
+        for (byte op : ops) {
+            Kind kind = Kind.values()[op];
+            append(edits, kind, oldIndex, newIndex, 1);
+            if (kind != Kind.INSERT) oldIndex++;
+            if (kind != Kind.DELETE) newIndex++;
+        }
+        append(edits, Kind.KEEP, oldIndex, newIndex, suffix);
+        return edits;
+    }
+
+    private static void append(List<Edit> edits, Kind kind, int oldStart, int newStart, int count) {
+        if (count == 0) return;
+        Edit last = edits.isEmpty() ? null : edits.get(edits.size() - 1);
+        if (last != null && last.kind() == kind) {
+            edits.set(edits.size() - 1, new Edit(kind, last.oldStart(), last.newStart(), last.count() + count));
+        } else {
+            edits.add(new Edit(kind, oldStart, newStart, count));
+        }
+    }
+
+    /**
+     * Myers' O(ND) shortest edit script as one {@link Kind} ordinal per line, or every line of {@code x} deleted and
+     * every line of {@code y} inserted when more than {@link #MAX_EDIT_DISTANCE} lines differ.
+     */
+    private static byte[] myers(int[] x, int[] y) {
+        int n = x.length;
+        int m = y.length;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>(); // v after each round d, for diagonals -d to d
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int i = k == -d || k != d && v[offset + k - 1] < v[offset + k + 1] ? v[offset + k + 1] : v[offset + k - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m && x[i] == y[j]) {
+                    i++;
+                    j++;
+                }
+                v[offset + k] = i;
+            }
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+            if (Math.abs(n - m) <= d && v[offset + n - m] >= n) return backtrack(trace, n, m);
+        }
+
+        byte[] replaced = new byte[n + m];
+        Arrays.fill(replaced, 0, n, (byte) Kind.DELETE.ordinal());
+        Arrays.fill(replaced, n, n + m, (byte) Kind.INSERT.ordinal());
+        return replaced;
+    }
+
+    private static byte[] backtrack(List<int[]> trace, int n, int m) {
+        int d = trace.size() - 1;
+        byte[] ops = new byte[(n + m + d) / 2]; // Each of the d edits takes one line, each kept line two
+        int position = ops.length;
+        int i = n;
+        int j = m;
+        for (; d > 0; d--) {
+            int[] previous = trace.get(d - 1); // Diagonal k of round d - 1 is at index k + d - 1
+            int k = i - j;
+            boolean down = k == -d || k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1];
+            int previousK = down ? k + 1 : k - 1;
+            int previousI = previous[previousK + d - 1];
+            int previousJ = previousI - previousK;
+            while (i > previousI && j > previousJ) {
+                ops[--position] = (byte) Kind.KEEP.ordinal();
+                i--;
+                j--;
+            }
+            if (down) {
+                ops[--position] = (byte) Kind.INSERT.ordinal();
+                j--;
+            } else {
+                ops[--position] = (byte) Kind.DELETE.ordinal();
+                i--;
+            }
+        }
+        while (i > 0) { // The snake of round 0
+            ops[--position] = (byte) Kind.KEEP.ordinal();
+            i--;
+        }
+        return ops;
+    }
+}
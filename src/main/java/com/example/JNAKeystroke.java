@@ -7,10 +7,47 @@ import com.sun.jna.Pointer;
 @Deprecated // This class is deprecated and will be removed in a future release
 public class JNAKeystroke implements KeystrokeStrategy {
 
-    private final int delay;
+    /**
+     * The most UTF-16 code units a single keyboard event can carry.
+     */
+    static final int MAX_UNICODE_STRING_LENGTH = 20;
+
+    private final Pacer pacer;
+    private final KeyEventBatch batch = new KeyEventBatch();
+    private final char[] chars = new char[MAX_UNICODE_STRING_LENGTH]; // Reused for every event
+    private Pointer eventSource;
+
+    /**
+     * Registers this backend as {@code --jna}. The macOS frameworks are only loaded once it types.
+     */
+    public static class Provider implements KeystrokeStrategyProvider {
+        @Override
+        public String name() {
+            return "jna";
+        }
+
+        @Override
+        public String description() {
+            return "Use JNA-based keystroke simulation.";
+        }
+
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout) {
+            return new JNAKeystroke(pacer);
+        }
+
+        @Override
+        public KeystrokeCompiler compiler(KeyLayout layout, String target) {
+            return KeystrokeCompiler.UNICODE;
+        }
+    }
 
     public JNAKeystroke(int delay) {
-        this.delay = delay;
+        this(Pacer.ofDelayMillis(delay));
+    }
+
+    public JNAKeystroke(Pacer pacer) {
+        this.pacer = pacer;
     }
 
 
@@ -26,32 +63,86 @@ public class JNAKeystroke implements KeystrokeStrategy {
     public static final int kCGEventSourceStateHIDSystemState = 1;
 
     @Override
-    public void simulateTyping(String text) {
-        // Create an event source
-        Pointer eventSource = JNAMacKeystrokeExample.CoreGraphicsLibrary.INSTANCE.CGEventSourceCreate(kCGEventSourceStateHIDSystemState);
-        for (char c : text.toCharArray()) {
-            simulateCharacter(c, eventSource);
-
-            // Optional: Introduce a small delay between keystrokes
-            try {
-                Thread.sleep(delay); // Adjust delay as needed
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    public KeystrokeCompiler compiler() {
+        return KeystrokeCompiler.UNICODE;
+    }
+
+    /**
+     * Types a plan from the job's event source. A plan replayed outside a job, as by {@link #simulateTyping(String)},
+     * gets an event source and a run of the run loop of its own.
+     */
+    @Override
+    public void replay(KeystrokePlan plan) {
+        boolean standalone = eventSource == null;
+        if (standalone) createEventSource();
+        try {
+            KeyEventBatch.replay(this, plan, pacer, batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (standalone) releaseEventSource();
         }
-        // Release the event source
+    }
+
+    @Override
+    public void startJob() {
+        pacer.start();
+        if (eventSource == null) createEventSource();
+    }
+
+    @Override
+    public void endJob() {
+        if (eventSource != null) releaseEventSource();
+    }
+
+    private void createEventSource() {
+        eventSource = JNAMacKeystrokeExample.CoreGraphicsLibrary.INSTANCE.CGEventSourceCreate(kCGEventSourceStateHIDSystemState);
+    }
+
+    /**
+     * Releases the event source, then runs the run loop once to process the events posted from it.
+     */
+    private void releaseEventSource() {
         JNAMacKeystrokeExample.CoreGraphicsLibrary.INSTANCE.CFRelease(eventSource);
-        // Run the run loop to process events
+        eventSource = null;
         JNAMacKeystrokeExample.CoreFoundationLibrary.INSTANCE.CFRunLoopRunInMode("kCFRunLoopDefaultMode", 2.0, false);
     }
 
-    private void simulateCharacter(char character, Pointer eventSource) {
+    @Override
+    public void dispatchEvent(int event) {
+        if (KeystrokePlan.op(event) != KeystrokePlan.OP_UNICODE) return; // Only Unicode events are supported
+        chars[0] = (char) KeystrokePlan.operand(event);
+        postUnicodeString(chars, 1);
+    }
+
+    /**
+     * Packs consecutive Unicode events into as few keyboard events as the platform allows, instead of posting a
+     * key down and key up pair for every character.
+     */
+    @Override
+    public void dispatch(KeyEventBatch events) {
+        int length = 0;
+        for (int i = 0; i < events.size(); i++) {
+            int event = events.event(i);
+            if (KeystrokePlan.op(event) != KeystrokePlan.OP_UNICODE) continue; // Only Unicode events are supported
+            chars[length++] = (char) KeystrokePlan.operand(event);
+            if (length == MAX_UNICODE_STRING_LENGTH) {
+                // Never split a surrogate pair across two events
+                boolean splitsPair = Character.isHighSurrogate(chars[length - 1]);
+                postUnicodeString(chars, splitsPair ? length - 1 : length);
+                if (splitsPair) chars[0] = chars[length - 1];
+                length = splitsPair ? 1 : 0;
+            }
+        }
+        if (length > 0) postUnicodeString(chars, length);
+    }
+
+    private void postUnicodeString(char[] unicodeString, int length) {
         Pointer keyDownEvent = CoreGraphicsLibrary.INSTANCE.CGEventCreateKeyboardEvent(eventSource, (short) 0, true);
         Pointer keyUpEvent = CoreGraphicsLibrary.INSTANCE.CGEventCreateKeyboardEvent(eventSource, (short) 0, false);
 
-        char[] chars = new char[]{character};
-        CoreGraphicsLibrary.INSTANCE.CGEventKeyboardSetUnicodeString(keyDownEvent, chars.length, chars);
-        CoreGraphicsLibrary.INSTANCE.CGEventKeyboardSetUnicodeString(keyUpEvent, chars.length, chars);
+        CoreGraphicsLibrary.INSTANCE.CGEventKeyboardSetUnicodeString(keyDownEvent, length, unicodeString);
+        CoreGraphicsLibrary.INSTANCE.CGEventKeyboardSetUnicodeString(keyUpEvent, length, unicodeString);
 
         CoreGraphicsLibrary.INSTANCE.CGEventPost(kCGHIDEventTap, keyDownEvent);
         CoreGraphicsLibrary.INSTANCE.CGEventPost(kCGHIDEventTap, keyUpEvent);
@@ -0,0 +1,149 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * A reusable window over packed {@link KeystrokePlan} events, handed to
+ * {@link KeystrokeStrategy#dispatch(KeyEventBatch)} so backends that can post many events per native call get the
+ * whole run at once.
+ */
+public final class KeyEventBatch {
+
+    private int[] events = new int[0];
+    private int offset;
+    private int length;
+    private KeystrokePlan plan;
+
+    /**
+     * Points this batch at a range of packed events. The array is not copied.
+     */
+    public KeyEventBatch set(int[] events, int offset, int length) {
+        this.events = events;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public int size() {
+        return length;
+    }
+
+    public int event(int index) {
+        return events[offset + index];
+    }
+
+    /**
+     * @param event An {@link KeystrokePlan#OP_PASTE} event of this batch.
+     * @return The text it pastes.
+     */
+    public String paste(int event) {
+        return plan.paste(KeystrokePlan.operand(event));
+    }
+
+    /**
+     * Points another batch at a sub-range of this one, for backends that hand part of a batch to another backend.
+     *
+     * @param from   The first event, inclusive.
+     * @param to     The last event, exclusive.
+     * @param target The batch to reuse.
+     * @return The target batch.
+     */
+    public KeyEventBatch range(int from, int to, KeyEventBatch target) {
+        target.plan = plan;
+        return target.set(events, offset + from, to - from);
+    }
+
+    /**
+     * Replays a plan through {@link KeystrokeStrategy#dispatch(KeyEventBatch)}. When the pacer never waits the
+     * whole plan goes out as one batch; otherwise each character is its own batch, followed by a pacing wait. If the
+     * replay stops early, through an interrupt or an error, every key it left pressed (modifiers held across
+     * characters in particular) is released before returning.
+     *
+     * @param strategy The strategy receiving the batches.
+     * @param plan     The plan to replay.
+     * @param pacer    The pacer scheduling the characters.
+     * @param batch    The batch to reuse.
+     * @throws InterruptedException If the thread is interrupted while pacing.
+     */
+    public static void replay(KeystrokeStrategy strategy, KeystrokePlan plan, Pacer pacer, KeyEventBatch batch)
+            throws InterruptedException {
+        int[] events = plan.events();
+        batch.plan = plan;
+        KeystrokeStats stats = KeystrokeStats.active();
+        int reached = 0; // End of the last batch handed to the strategy
+        try {
+            if (pacer.intervalNanos() == 0) {
+                reached = events.length;
+                dispatch(strategy, batch.set(events, 0, events.length), plan.characterCount(), stats);
+                pacer.advance(plan.characterCount());
+                reached = -1;
+                return;
+            }
+
+            int start = 0;
+            for (int i = 0; i < events.length; i++) {
+                if (KeystrokePlan.endsCharacter(events[i])) {
+                    reached = i + 1;
+                    dispatch(strategy, batch.set(events, start, i + 1 - start), 1, stats);
+                    pace(pacer, stats); // Wait until the next character is due
+                    start = i + 1;
+                }
+            }
+            if (start < events.length) {
+                reached = events.length;
+                dispatch(strategy, batch.set(events, start, events.length - start), 0, stats); // Trailing modifier releases
+            }
+            reached = -1;
+        } finally {
+            if (reached > 0) releasePressedKeys(strategy, events, reached);
+        }
+    }
+
+    private static void dispatch(KeystrokeStrategy strategy, KeyEventBatch batch, int characters, KeystrokeStats stats) {
+        KeystrokeJfrEvents.Dispatch event = new KeystrokeJfrEvents.Dispatch();
+        event.begin();
+        long start = stats != null ? System.nanoTime() : 0;
+        strategy.dispatch(batch);
+        if (stats != null) stats.dispatched(System.nanoTime() - start, batch.size(), characters);
+        if (event.shouldCommit()) {
+            event.events = batch.size();
+            event.characters = characters;
+            event.commit();
+        }
+    }
+
+    private static void pace(Pacer pacer, KeystrokeStats stats) throws InterruptedException {
+        KeystrokeJfrEvents.Pacing event = new KeystrokeJfrEvents.Pacing();
+        event.begin();
+        long start = stats != null ? System.nanoTime() : 0;
+        pacer.pace();
+        if (stats != null) stats.paced(System.nanoTime() - start);
+        event.commit();
+    }
+
+    /**
+     * Releases the keys pressed but not released within the first {@code end} events.
+     */
+    private static void releasePressedKeys(KeystrokeStrategy strategy, int[] events, int end) {
+        int[] pressed = new int[8];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            int op = KeystrokePlan.op(events[i]);
+            int keyCode = KeystrokePlan.operand(events[i]);
+            if (op == KeystrokePlan.OP_PRESS) {
+                if (count == pressed.length) pressed = Arrays.copyOf(pressed, count << 1);
+                pressed[count++] = keyCode;
+            } else if (op == KeystrokePlan.OP_RELEASE) {
+                for (int j = count - 1; j >= 0; j--) {
+                    if (pressed[j] == keyCode) {
+                        pressed[j] = pressed[--count];
+                        break;
+                    }
+                }
+            }
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            strategy.dispatchEvent(KeystrokePlan.OP_RELEASE | pressed[i]);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example;
+
+import java.awt.event.KeyEvent;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keyboard layout: which key, and which modifiers, produce each character on the target.
+ * <p>
+ * Layouts are loaded from definitions on the classpath ({@code /layouts/<id>.layout}) and compiled into a dense
+ * table indexed by code point, with an overflow map for code points above the table. Each entry packs the key code
+ * and a modifier mask into one {@code int}, so lookups are O(1) and allocation-free. Loaded layouts are immutable
+ * and shared.
+ * <p>
+ * Definition lines have the form {@code VK_NAME plain [shifted [altgr]]}. Keys are named by their
+ * {@link KeyEvent} constant for the US key position; each character column is a single character, {@code U+XXXX},
+ * or {@code --} for none. Lines starting with {@code #} are comments.
+ * <p>
+ * Key codes by position suit backends that press physical keys, such as uinput, and AWT on macOS. AWT on X11 and
+ * Windows resolves key codes against the system's active layout instead, so that {@code VK_Z} types z wherever the
+ * z key is; the {@link #symbolic()} variant of a layout names each key by the character it types for them.
+ */
+public final class KeyLayout {
+
+    /**
+     * Modifier flag: the character needs Shift.
+     */
+    public static final int SHIFT = 1 << 28;
+    /**
+     * Modifier flag: the character needs AltGr.
+     */
+    public static final int ALT_GRAPH = 1 << 29;
+    /**
+     * Mask of all modifier flags.
+     */
+    public static final int MODIFIERS = SHIFT | ALT_GRAPH;
+    /**
+     * Entry for characters the layout cannot produce.
+     */
+    public static final int UNMAPPED = 0;
+
+    private static final int KEY_CODE_MASK = SHIFT - 1;
+    private static final int[] COLUMN_MODIFIERS = {0, SHIFT, ALT_GRAPH, SHIFT | ALT_GRAPH};
+    private static final Map<String, KeyLayout> LOADED = new ConcurrentHashMap<>();
+
+    public static final KeyLayout US = forName("us");
+
+    private final String id;
+    private final int[] table;
+    private final Map<Integer, Integer> overflow;
+    private KeyLayout symbolic; // Set once, right after loading
+
+    private KeyLayout(String id, int[] table, Map<Integer, Integer> overflow) {
+        this.id = id;
+        this.table = table;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Returns a layout from the classpath, loading it on first use.
+     *
+     * @param id The layout id, for example {@code us}, {@code uk}, {@code de} or {@code fr}.
+     * @return The layout.
+     * @throws IllegalArgumentException If there is no such layout.
+     */
+    public static KeyLayout forName(String id) {
+        return LOADED.computeIfAbsent(id.toLowerCase(), KeyLayout::loadResource);
+    }
+
+    private static KeyLayout loadResource(String id) {
+        InputStream in = KeyLayout.class.getResourceAsStream("/layouts/" + id + ".layout");
+        if (in == null) throw new IllegalArgumentException("Unknown keyboard layout: " + id);
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return load(id, reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading keyboard layout " + id, e);
+        }
+    }
+
+    /**
+     * Parses a layout definition.
+     *
+     * @param id     The id of the layout.
+     * @param reader The definition.
+     * @return The layout.
+     * @throws IOException If reading fails.
+     */
+    public static KeyLayout load(String id, Reader reader) throws IOException {
+        Map<Integer, Integer> entries = new HashMap<>();
+        // Keys that type the same on every layout
+        entries.put((int) ' ', KeyEvent.VK_SPACE);
+        entries.put((int) '\n', KeyEvent.VK_ENTER);
+        entries.put((int) '\t', KeyEvent.VK_TAB);
+        entries.put((int) '\b', KeyEvent.VK_BACK_SPACE);
+        entries.put(0x1b, KeyEvent.VK_ESCAPE);
+        Map<Integer, Integer> symbolicEntries = new HashMap<>(entries);
+
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] tokens = line.split("\\s+");
+            int keyCode = keyCodeForName(tokens[0], id, lineNumber);
+            int symbolicKeyCode = tokens.length > 1 ? symbolicKeyCode(parseCharacter(tokens[1], id, lineNumber), keyCode) : keyCode;
+            for (int column = 1; column < tokens.length && column <= COLUMN_MODIFIERS.length; column++) {
+                int codePoint = parseCharacter(tokens[column], id, lineNumber);
+                if (codePoint >= 0) {
+                    // The first definition of a character wins, so plainer columns are kept
+                    entries.putIfAbsent(codePoint, keyCode | COLUMN_MODIFIERS[column - 1]);
+                    symbolicEntries.putIfAbsent(codePoint, symbolicKeyCode | COLUMN_MODIFIERS[column - 1]);
+                }
+            }
+        }
+        KeyLayout layout = compile(id, entries);
+        layout.symbolic = compile(id, symbolicEntries);
+        layout.symbolic.symbolic = layout.symbolic;
+        return layout;
+    }
+
+    /**
+     * Returns the key code AWT resolves to the key typing {@code plain} on the active layout, or the positional key
+     * code when the key types nothing by itself, such as a dead key.
+     */
+    private static int symbolicKeyCode(int plain, int keyCode) {
+        if (plain < 0 || plain > Character.MAX_VALUE) return keyCode;
+        int extended = KeyEvent.getExtendedKeyCodeForChar(plain);
+        return extended != KeyEvent.VK_UNDEFINED ? extended : keyCode;
+    }
+
+    private static KeyLayout compile(String id, Map<Integer, Integer> entries) {
+        int tableSize = entries.keySet().stream()
+                .filter(codePoint -> codePoint <= Character.MAX_VALUE)
+                .mapToInt(codePoint -> codePoint + 1)
+                .max().orElse(0);
+        int[] table = new int[tableSize];
+        Map<Integer, Integer> overflow = new HashMap<>();
+        entries.forEach((codePoint, entry) -> {
+            if (codePoint < tableSize) {
+                table[codePoint] = entry;
+            } else {
+                overflow.put(codePoint, entry);
+            }
+        });
+        return new KeyLayout(id, table, Map.copyOf(overflow));
+    }
+
+    private static int keyCodeForName(String name, String id, int lineNumber) {
+        try {
+            return KeyEvent.class.getField(name).getInt(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Layout " + id + " line " + lineNumber + ": unknown key " + name, e);
+        }
+    }
+
+    private static int parseCharacter(String token, String id, int lineNumber) {
+        if (token.equals("--")) return -1;
+        if (token.startsWith("U+") && token.length() > 2) return Integer.parseInt(token.substring(2), 16);
+        if (token.codePointCount(0, token.length()) != 1) {
+            throw new IllegalArgumentException("Layout " + id + " line " + lineNumber + ": not a character: " + token);
+        }
+        return token.codePointAt(0);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return This layout with each key named by the character it types without modifiers, for AWT on X11 and
+     * Windows. Modifiers are kept, since the active layout needs the same ones.
+     */
+    public KeyLayout symbolic() {
+        return symbolic;
+    }
+
+    /**
+     * @param codePoint The character to look up.
+     * @return The packed key code and modifiers, or {@link #UNMAPPED}.
+     */
+    public int lookup(int codePoint) {
+        if (codePoint >= 0 && codePoint < table.length) return table[codePoint];
+        Integer entry = overflow.isEmpty() ? null : overflow.get(codePoint);
+        return entry == null ? UNMAPPED : entry;
+    }
+
+    public static int keyCode(int entry) {
+        return entry & KEY_CODE_MASK;
+    }
+
+    public static boolean needsShift(int entry) {
+        return (entry & SHIFT) != 0;
+    }
+
+    public static boolean needsAltGraph(int entry) {
+        return (entry & ALT_GRAPH) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyLayout{" + id + ", " + (Arrays.stream(table).filter(e -> e != UNMAPPED).count() + overflow.size()) + " characters}";
+    }
+}
@@ -0,0 +1,254 @@
+package com.example;
+
+import java.awt.event.KeyEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns text into a {@link KeystrokePlan}. All character to key code resolution happens here, once, before typing
+ * starts.
+ */
+public class KeystrokeCompiler {
+
+    /**
+     * Compiler emitting key code events, for backends that press physical keys.
+     */
+    public static final KeystrokeCompiler KEY_CODES = new KeystrokeCompiler(KeyLayout.US);
+    /**
+     * Compiler emitting Unicode events, for backends that inject characters directly.
+     */
+    public static final KeystrokeCompiler UNICODE = new KeystrokeCompiler(true);
+
+    private static final Map<KeyLayout, KeystrokeCompiler> BY_LAYOUT = new ConcurrentHashMap<>(Map.of(KeyLayout.US, KEY_CODES));
+
+    private final boolean unicode;
+    private final KeyLayout layout;
+
+    /**
+     * @param unicode True to emit Unicode events instead of key codes.
+     */
+    public KeystrokeCompiler(boolean unicode) {
+        this(unicode, KeyLayout.US);
+    }
+
+    /**
+     * @param layout The layout that resolves characters to key codes.
+     */
+    public KeystrokeCompiler(KeyLayout layout) {
+        this(false, layout);
+    }
+
+    private KeystrokeCompiler(boolean unicode, KeyLayout layout) {
+        this.unicode = unicode;
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the shared key code compiler for a layout, so every backend instance typing with the same layout uses
+     * the same read-only tables and shares {@link PlanCache} entries.
+     *
+     * @param layout The layout that resolves characters to key codes.
+     * @return The compiler for the layout.
+     */
+    public static KeystrokeCompiler forLayout(KeyLayout layout) {
+        return BY_LAYOUT.computeIfAbsent(layout, KeystrokeCompiler::new);
+    }
+
+    public KeyLayout layout() {
+        return layout;
+    }
+
+    public KeystrokePlan compile(CharSequence text) {
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(text.length() * (unicode ? 1 : 2) + 8);
+        compile(text, 0, text.length(), builder);
+        end(builder);
+        finish(builder);
+        return builder.build();
+    }
+
+    /**
+     * Appends the events for a range of characters to the given builder. Modifiers may still be held afterwards;
+     * call {@link #finish(KeystrokePlan.Builder)} before building the plan.
+     *
+     * @param text    The source text.
+     * @param start   The first character, inclusive.
+     * @param end     The last character, exclusive.
+     * @param builder The builder receiving the events.
+     */
+    public void compile(CharSequence text, int start, int end, KeystrokePlan.Builder builder) {
+        KeystrokeJfrEvents.Compile event = new KeystrokeJfrEvents.Compile();
+        event.begin();
+        KeystrokeStats stats = KeystrokeStats.active();
+        long started = stats != null ? System.nanoTime() : 0;
+        int sizeBefore = builder.size();
+
+        compileRange(text, start, end, builder);
+
+        if (stats != null) stats.mapped(System.nanoTime() - started);
+        if (event.shouldCommit()) {
+            event.characters = end - start;
+            event.events = builder.size() - sizeBefore;
+            event.commit();
+        }
+    }
+
+    /**
+     * A carriage return types Enter and a line feed right after one types nothing, so CRLF and lone CR line breaks
+     * type one Enter each. The builder carries a carriage return that ends one chunk over to the next.
+     */
+    private void compileRange(CharSequence text, int start, int end, KeystrokePlan.Builder builder) {
+        boolean afterCarriageReturn = builder.afterCarriageReturn();
+        for (int i = start; i < end; i++) {
+            char character = text.charAt(i);
+            if (character == '\n' && afterCarriageReturn) {
+                afterCarriageReturn = false;
+                continue;
+            }
+            afterCarriageReturn = character == '\r';
+            if (afterCarriageReturn) character = '\n';
+            if (unicode) {
+                builder.unicode(character).endCharacter();
+            } else if (Character.isHighSurrogate(character) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                compileCodePoint(Character.toCodePoint(character, text.charAt(++i)), builder);
+            } else {
+                compileCodePoint(character, builder);
+            }
+        }
+        builder.afterCarriageReturn(afterCarriageReturn);
+    }
+
+    /**
+     * Appends the key code events for one character, or nothing if the character cannot be typed.
+     */
+    protected void compileCodePoint(int codePoint, KeystrokePlan.Builder builder) {
+        int entry = layout.lookup(codePoint);
+        if (entry == KeyLayout.UNMAPPED) {
+            entry = fallbackEntry(codePoint);
+            if (entry == KeyLayout.UNMAPPED) {
+                skipped();
+                return;
+            }
+        }
+
+        typeKey(entry, builder);
+    }
+
+    /**
+     * Appends a key press and release with the modifiers from a packed {@link KeyLayout} entry. Modifiers already
+     * held for the previous character stay held, so a run of shifted characters presses Shift only once.
+     */
+    protected void typeKey(int entry, KeystrokePlan.Builder builder) {
+        setModifiers(entry & KeyLayout.MODIFIERS, builder);
+        int keyCode = KeyLayout.keyCode(entry);
+        builder.press(keyCode).release(keyCode).endCharacter();
+    }
+
+    /**
+     * Appends a press and release of a key that types no character, such as an arrow key, with every modifier
+     * released first. The key counts as a character, so it is paced like one.
+     *
+     * @param awtKeyCode The key, as a {@link KeyEvent} {@code VK_} constant.
+     * @param builder    The builder receiving the events.
+     * @return False, appending nothing, if this compiler's backend cannot press the key.
+     */
+    public boolean compileKey(int awtKeyCode, KeystrokePlan.Builder builder) {
+        int keyCode = keyCodeFor(awtKeyCode);
+        if (keyCode < 0) return false;
+        finish(builder);
+        builder.press(keyCode).release(keyCode).endCharacter();
+        return true;
+    }
+
+    /**
+     * @param awtKeyCode A key, as a {@link KeyEvent} {@code VK_} constant.
+     * @return The backend's key code for it, or -1 if the backend cannot press it.
+     */
+    protected int keyCodeFor(int awtKeyCode) {
+        return unicode ? -1 : awtKeyCode;
+    }
+
+    /**
+     * Identifies the backend key codes this compiler resolves characters to, when they depend on more than the
+     * layout, such as the keyboard mapping of an X server. Keystroke macros record it and are only replayed where it
+     * matches.
+     *
+     * @return The keymap fingerprint, or an empty string when the layout alone determines the key codes.
+     */
+    public String keymap() {
+        return "";
+    }
+
+    /**
+     * Forgets the text compiled before, so the next input compiles as if this compiler were new. The engine calls
+     * it before planning each job; stateless compilers have nothing to forget.
+     */
+    public void reset() {
+    }
+
+    /**
+     * Appends the events for text held back until the end of the input, such as a line break whose meaning depends
+     * on the text that follows it. Stateless compilers hold nothing back.
+     *
+     * @param builder The builder receiving the events.
+     */
+    public void end(KeystrokePlan.Builder builder) {
+    }
+
+    /**
+     * @return False if what this compiler produces for a text depends on the text compiled before, so its plans
+     * must not be cached.
+     */
+    public boolean isStateless() {
+        return true;
+    }
+
+    /**
+     * Records a character that no key produces.
+     */
+    protected void skipped() {
+        KeystrokeStats stats = KeystrokeStats.active();
+        if (stats != null) stats.skippedCharacter();
+    }
+
+    /**
+     * Releases every modifier still held, so the plan leaves the keyboard as it found it.
+     */
+    public void finish(KeystrokePlan.Builder builder) {
+        setModifiers(0, builder);
+    }
+
+    /**
+     * Emits the minimal presses and releases to go from the modifiers currently held to the wanted ones.
+     */
+    private void setModifiers(int wanted, KeystrokePlan.Builder builder) {
+        int held = builder.heldModifiers();
+        if (held == wanted) return;
+
+        int released = held & ~wanted;
+        int pressed = wanted & ~held;
+        if ((released & KeyLayout.SHIFT) != 0) builder.release(shiftKeyCode());
+        if ((released & KeyLayout.ALT_GRAPH) != 0) builder.release(altGraphKeyCode());
+        if ((pressed & KeyLayout.ALT_GRAPH) != 0) builder.press(altGraphKeyCode());
+        if ((pressed & KeyLayout.SHIFT) != 0) builder.press(shiftKeyCode());
+        builder.heldModifiers(wanted);
+    }
+
+    protected int shiftKeyCode() {
+        return KeyEvent.VK_SHIFT;
+    }
+
+    protected int altGraphKeyCode() {
+        return KeyEvent.VK_ALT_GRAPH;
+    }
+
+    /**
+     * Characters the layout does not define fall back to the platform's extended key code, which works when the
+     * target keyboard has a key for them.
+     */
+    static int fallbackEntry(int codePoint) {
+        if (codePoint > Character.MAX_VALUE) return KeyLayout.UNMAPPED;
+        int keyCode = KeyEvent.getExtendedKeyCodeForChar(codePoint);
+        if (keyCode == KeyEvent.VK_UNDEFINED) return KeyLayout.UNMAPPED;
+        return keyCode | (Character.isUpperCase(codePoint) ? KeyLayout.SHIFT : 0);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom Java Flight Recorder events for the keystroke pipeline. They cost nothing unless a recording enables
+ * them, and show the typing timeline next to GC and thread activity in a flight recording.
+ */
+public final class KeystrokeJfrEvents {
+
+    private static final String CATEGORY = "TextToKeyStroke";
+
+    private KeystrokeJfrEvents() {
+    }
+
+    @Name("com.example.KeystrokeDispatch")
+    @Label("Keystroke Dispatch")
+    @Description("A batch of key events handed to the backend")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Dispatch extends Event {
+        @Label("Events")
+        public int events;
+        @Label("Characters")
+        public int characters;
+    }
+
+    @Name("com.example.KeystrokePacing")
+    @Label("Keystroke Pacing Wait")
+    @Description("Time spent waiting for the next character to be due")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Pacing extends Event {
+    }
+
+    @Name("com.example.KeystrokeCompile")
+    @Label("Keystroke Compile")
+    @Description("A chunk of text compiled into key events")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Compile extends Event {
+        @Label("Characters")
+        public int characters;
+        @Label("Events")
+        public int events;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary keystroke macro ({@code .ksm}): compiled key events stored so they can be replayed many times
+ * without decoding or mapping any text.
+ * <p>
+ * Format, version 2:
+ * <pre>
+ * magic     "KSM"
+ * version   1 byte
+ * flags     1 byte, bit 0 set when every character carries a timestamp
+ * backend   varint length + UTF-8, the backend the events were compiled for
+ * layout    varint length + UTF-8, the keyboard layout id
+ * keymap    varint length + UTF-8, the compiler's {@link KeystrokeCompiler#keymap()}, empty when the key codes
+ *           depend on the layout alone
+ * events    until the end of the file, each a varint of (operand &lt;&lt; 3 | op &lt;&lt; 1 | character end), followed,
+ *           when timestamps are on and the event ends a character, by a varint of the microseconds to wait before
+ *           the next character
+ * </pre>
+ * Varints are unsigned LEB128, so typical key codes take one or two bytes per event. Paste events cannot be stored.
+ * Version 1 files, which have no keymap, are still read, with an empty keymap.
+ */
+public final class KeystrokeMacro {
+
+    static final byte[] MAGIC = {'K', 'S', 'M'};
+    static final int VERSION = 2;
+    static final int FLAG_TIMESTAMPS = 1;
+    /**
+     * Number of events replayed per plan, at least; plans are only split where no key is held down.
+     */
+    static final int REPLAY_CHUNK_EVENTS = 8192;
+
+    private final String backend;
+    private final String layout;
+    private final String keymap;
+    private final boolean timestamps;
+    private final ByteBuffer events;
+
+    private KeystrokeMacro(String backend, String layout, String keymap, boolean timestamps, ByteBuffer events) {
+        this.backend = backend;
+        this.layout = layout;
+        this.keymap = keymap;
+        this.timestamps = timestamps;
+        this.events = events;
+    }
+
+    public String backend() {
+        return backend;
+    }
+
+    public String layout() {
+        return layout;
+    }
+
+    /**
+     * @return The keymap the events were resolved against, see {@link KeystrokeCompiler#keymap()}.
+     */
+    public String keymap() {
+        return keymap;
+    }
+
+    public boolean hasTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * Maps a macro file into memory, reads its header and checks that every event is complete, so a truncated or
+     * corrupt file is rejected before anything is typed. The events are decoded from the mapping during replay.
+     *
+     * @param channel The macro file.
+     * @return The macro.
+     * @throws IOException If the file cannot be mapped, is not a version 1 or 2 macro, or is truncated or corrupt.
+     */
+    public static KeystrokeMacro map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) throw new IOException("Macro file is larger than 2 GB");
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        try {
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) throw new IOException("Not a keystroke macro file");
+            }
+            int version = buffer.get();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported keystroke macro version " + version);
+            int flags = buffer.get();
+            String backend = readString(buffer);
+            String layout = readString(buffer);
+            String keymap = version == 1 ? "" : readString(buffer);
+            boolean timestamps = (flags & FLAG_TIMESTAMPS) != 0;
+            ByteBuffer events = buffer.slice();
+            validate(events.duplicate(), timestamps);
+            return new KeystrokeMacro(backend, layout, keymap, timestamps, events);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated keystroke macro header", e);
+        }
+    }
+
+    /**
+     * Walks the events without typing them.
+     *
+     * @throws IOException If an event or timestamp is cut off, a varint is too long, or an event is a paste.
+     */
+    private static void validate(ByteBuffer in, boolean timestamps) throws IOException {
+        while (in.hasRemaining()) {
+            int offset = in.position();
+            int event = decodeEvent(readCheckedVarint(in, "event byte", offset));
+            if (KeystrokePlan.op(event) == KeystrokePlan.OP_PASTE) {
+                throw new IOException("Corrupt keystroke macro: paste event at event byte " + offset);
+            }
+            if (timestamps && KeystrokePlan.endsCharacter(event)) readCheckedVarint(in, "event byte", offset);
+        }
+    }
+
+    /**
+     * @param where  Names what the offset counts from, for the error message.
+     * @param offset The offset of the value, or of the event it belongs to.
+     */
+    private static int readCheckedVarint(ByteBuffer in, String where, int offset) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) throw new IOException("Truncated keystroke macro: value at " + where + " " + offset + " is cut off");
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Corrupt keystroke macro: varint longer than 5 bytes at " + where + " " + offset);
+    }
+
+    /**
+     * Types the macro. Without timestamps the strategy's pacer paces as usual; with them each character is followed
+     * by its recorded wait, applied through the pacer.
+     *
+     * @param strategy The strategy typing the events. It must be the backend the macro was compiled for.
+     * @param pacer    The pacer of the strategy.
+     */
+    public void replay(KeystrokeStrategy strategy, Pacer pacer) {
+        ByteBuffer in = events.duplicate();
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(REPLAY_CHUNK_EVENTS + 64);
+        int[] character = new int[8]; // Events of the character being decoded
+        int length = 0;
+        int pressedDelta = 0;
+        int held = 0; // Keys held down at the end of the builder
+        long groupInterval = -1; // Wait after each character of the plan being built, when timestamps are on
+        while (in.hasRemaining() && !Thread.currentThread().isInterrupted()) {
+            int event = decodeEvent(readVarint(in));
+            if (length == character.length) character = Arrays.copyOf(character, length << 1);
+            character[length++] = event;
+            if (KeystrokePlan.op(event) == KeystrokePlan.OP_PRESS) pressedDelta++;
+            if (KeystrokePlan.op(event) == KeystrokePlan.OP_RELEASE) pressedDelta--;
+            if (!KeystrokePlan.endsCharacter(event)) continue;
+
+            long interval = timestamps ? TimeUnit.MICROSECONDS.toNanos(readVarint(in) & 0xffffffffL) : -1;
+            if (builder.size() > 0 && held == 0 && (interval != groupInterval || builder.size() >= REPLAY_CHUNK_EVENTS)) {
+                replayGroup(strategy, pacer, builder, groupInterval);
+            }
+            if (builder.size() == 0) groupInterval = interval;
+            for (int i = 0; i < length; i++) {
+                builder.add(character[i]);
+            }
+            held += pressedDelta;
+            length = 0;
+            pressedDelta = 0;
+        }
+        for (int i = 0; i < length; i++) {
+            builder.add(character[i]); // Trailing modifier releases
+        }
+        if (builder.size() > 0) replayGroup(strategy, pacer, builder, groupInterval);
+    }
+
+    private static void replayGroup(KeystrokeStrategy strategy, Pacer pacer, KeystrokePlan.Builder builder, long interval) {
+        if (interval >= 0) pacer.setIntervalNanos(interval);
+        strategy.replay(builder.build());
+        builder.clear();
+    }
+
+    /**
+     * Writes macros one plan at a time, so text of any size can be compiled in a streaming pass.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final WritableByteChannel out;
+        private final long intervalMicros;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        /**
+         * Writes the header.
+         *
+         * @param out           The destination.
+         * @param backend       The backend the plans were compiled for.
+         * @param layout        The keyboard layout id the plans were compiled with.
+         * @param keymap        The {@link KeystrokeCompiler#keymap()} of the compiler the plans came from.
+         * @param intervalNanos The wait to record after every character, or -1 to record no timestamps.
+         */
+        public Writer(WritableByteChannel out, String backend, String layout, String keymap, long intervalNanos) throws IOException {
+            this.out = out;
+            this.intervalMicros = intervalNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(intervalNanos);
+            buffer.put(MAGIC).put((byte) VERSION).put((byte) (intervalMicros >= 0 ? FLAG_TIMESTAMPS : 0));
+            writeString(backend);
+            writeString(layout);
+            writeString(keymap);
+        }
+
+        /**
+         * Appends the events of a plan.
+         *
+         * @throws IllegalArgumentException If the plan pastes text.
+         */
+        public void write(KeystrokePlan plan) throws IOException {
+            for (int i = 0; i < plan.size(); i++) {
+                int event = plan.event(i);
+                if (KeystrokePlan.op(event) == KeystrokePlan.OP_PASTE) {
+                    throw new IllegalArgumentException("Pasted text cannot be stored in a keystroke macro");
+                }
+                if (buffer.remaining() < 10) flush();
+                writeVarint(encodeEvent(event));
+                if (intervalMicros >= 0 && KeystrokePlan.endsCharacter(event)) writeVarint((int) intervalMicros);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            out.close();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) out.write(buffer);
+            buffer.clear();
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                buffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    static int encodeEvent(int event) {
+        return KeystrokePlan.operand(event) << 3 | (KeystrokePlan.op(event) >>> 30) << 1 | (KeystrokePlan.endsCharacter(event) ? 1 : 0);
+    }
+
+    static int decodeEvent(int encoded) {
+        return (encoded >>> 1 & 3) << 30 | ((encoded & 1) != 0 ? KeystrokePlan.CHAR_END : 0) | encoded >>> 3;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Reads a length-prefixed header string, checking the length against the bytes left before allocating it.
+     */
+    private static String readString(ByteBuffer in) throws IOException {
+        int offset = in.position();
+        int length = readCheckedVarint(in, "byte", offset);
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Truncated keystroke macro header: string at byte " + offset + " is cut off");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, precompiled sequence of key events.
+ * <p>
+ * Every event is packed into a single {@code int}: the two high bits hold the operation (press, release, Unicode
+ * or paste), bit 29 marks the last event of a typed character (the point where pacing applies), and the remaining
+ * bits hold the key code, UTF-16 code unit or index into the plan's paste table. Backends replay the array directly, so typing does no lookups and
+ * allocates nothing.
+ */
+public final class KeystrokePlan {
+
+    /**
+     * Press the key code held in the operand.
+     */
+    public static final int OP_PRESS = 0;
+    /**
+     * Release the key code held in the operand.
+     */
+    public static final int OP_RELEASE = 1 << 30;
+    /**
+     * Type the UTF-16 code unit held in the operand (press and release in one event).
+     */
+    public static final int OP_UNICODE = 2 << 30;
+    /**
+     * Paste the text at the index held in the operand of the plan's paste table, see {@link #paste(int)}.
+     */
+    public static final int OP_PASTE = 3 << 30;
+    /**
+     * Flag set on the last event of every typed character.
+     */
+    public static final int CHAR_END = 1 << 29;
+
+    private static final int OP_MASK = 3 << 30;
+    private static final int OPERAND_MASK = CHAR_END - 1;
+
+    private static final String[] NO_PASTES = new String[0];
+    private static final KeystrokePlan EMPTY = new KeystrokePlan(new int[0], 0, NO_PASTES);
+
+    private final int[] events;
+    private final int characterCount;
+    private final String[] pastes;
+
+    private KeystrokePlan(int[] events, int characterCount, String[] pastes) {
+        this.events = events;
+        this.characterCount = characterCount;
+        this.pastes = pastes;
+    }
+
+    /**
+     * Compiles text into key code events using the default US mapping.
+     *
+     * @param text The text to compile.
+     * @return The compiled plan.
+     */
+    public static KeystrokePlan compile(CharSequence text) {
+        return KeystrokeCompiler.KEY_CODES.compile(text);
+    }
+
+    /**
+     * Compiles text into Unicode events, for backends that inject characters rather than key codes.
+     *
+     * @param text The text to compile.
+     * @return The compiled plan.
+     */
+    public static KeystrokePlan compileUnicode(CharSequence text) {
+        return KeystrokeCompiler.UNICODE.compile(text);
+    }
+
+    public static KeystrokePlan empty() {
+        return EMPTY;
+    }
+
+    public static int op(int event) {
+        return event & OP_MASK;
+    }
+
+    public static int operand(int event) {
+        return event & OPERAND_MASK;
+    }
+
+    public static boolean endsCharacter(int event) {
+        return (event & CHAR_END) != 0;
+    }
+
+    /**
+     * @return The number of packed events.
+     */
+    public int size() {
+        return events.length;
+    }
+
+    /**
+     * @return The number of characters that produce at least one event.
+     */
+    public int characterCount() {
+        return characterCount;
+    }
+
+    public int event(int index) {
+        return events[index];
+    }
+
+    /**
+     * @param index The operand of an {@link #OP_PASTE} event.
+     * @return The text that event pastes.
+     */
+    public String paste(int index) {
+        return pastes[index];
+    }
+
+    /**
+     * Direct access to the packed events for replay loops. Callers must not modify the array.
+     */
+    int[] events() {
+        return events;
+    }
+
+    String[] pastes() {
+        return pastes;
+    }
+
+    @Override
+    public String toString() {
+        return "KeystrokePlan{events=" + events.length + ", characters=" + characterCount + "}";
+    }
+
+    /**
+     * Growable event buffer used while compiling. Can be cleared and reused between chunks.
+     */
+    public static final class Builder {
+        private int[] events;
+        private int size;
+        private int characterCount;
+        private int heldModifiers;
+        private boolean afterCarriageReturn;
+        private String[] pastes = NO_PASTES;
+        private int pasteCount;
+
+        public Builder() {
+            this(64);
+        }
+
+        public Builder(int initialCapacity) {
+            this.events = new int[Math.max(initialCapacity, 8)];
+        }
+
+        public Builder add(int event) {
+            if (size == events.length) {
+                events = Arrays.copyOf(events, events.length << 1);
+            }
+            events[size++] = event;
+            if (endsCharacter(event)) characterCount++;
+            return this;
+        }
+
+        public Builder press(int keyCode) {
+            return add(OP_PRESS | keyCode);
+        }
+
+        public Builder release(int keyCode) {
+            return add(OP_RELEASE | keyCode);
+        }
+
+        public Builder unicode(char character) {
+            return add(OP_UNICODE | character);
+        }
+
+        /**
+         * Adds a paste of the given text, counted as one event that ends all of its characters.
+         */
+        public Builder paste(String text) {
+            if (pasteCount == pastes.length) pastes = Arrays.copyOf(pastes, Math.max(4, pasteCount << 1));
+            pastes[pasteCount] = text;
+            add(OP_PASTE | CHAR_END | pasteCount++);
+            characterCount += text.codePointCount(0, text.length()) - 1;
+            return this;
+        }
+
+        /**
+         * Marks the most recent event as the end of a character.
+         */
+        public Builder endCharacter() {
+            if (size > 0 && !endsCharacter(events[size - 1])) {
+                events[size - 1] |= CHAR_END;
+                characterCount++;
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return The {@link KeyLayout} modifier flags held down at the end of the events so far.
+         */
+        public int heldModifiers() {
+            return heldModifiers;
+        }
+
+        public void heldModifiers(int modifiers) {
+            this.heldModifiers = modifiers;
+        }
+
+        /**
+         * @return True if the text compiled so far ends with a carriage return, so a line feed that follows belongs
+         * to the same line break. Unlike the events, it is kept by {@link #clear()}, as the next chunk continues the
+         * same text.
+         */
+        public boolean afterCarriageReturn() {
+            return afterCarriageReturn;
+        }
+
+        public void afterCarriageReturn(boolean afterCarriageReturn) {
+            this.afterCarriageReturn = afterCarriageReturn;
+        }
+
+        public void clear() {
+            size = 0;
+            characterCount = 0;
+            heldModifiers = 0;
+            Arrays.fill(pastes, 0, pasteCount, null);
+            pasteCount = 0;
+        }
+
+        public KeystrokePlan build() {
+            if (size == 0) return EMPTY;
+            return new KeystrokePlan(Arrays.copyOf(events, size), characterCount,
+                    pasteCount == 0 ? NO_PASTES : Arrays.copyOf(pastes, pasteCount));
+        }
+    }
+}
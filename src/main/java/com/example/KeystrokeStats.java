@@ -0,0 +1,101 @@
+package com.example;
+
+/**
+ * Counters and latency histograms for the keystroke pipeline, filled in by every backend through the shared
+ * decode, compile and replay paths.
+ * <p>
+ * Collection is off unless {@link #enable()} has been called; the hot paths only read {@link #active()} and skip
+ * all timing when it is null. Every recorder is synchronized, since {@link ParallelInput} compiles on several threads
+ * and the daemon runs a dispatcher per target. Read the statistics once typing has finished.
+ */
+public final class KeystrokeStats {
+
+    private static volatile KeystrokeStats active;
+
+    private final LatencyHistogram decode = new LatencyHistogram("decode");
+    private final LatencyHistogram map = new LatencyHistogram("map");
+    private final LatencyHistogram dispatch = new LatencyHistogram("dispatch");
+    private final LatencyHistogram pacingWait = new LatencyHistogram("pacing-wait");
+    private long characters;
+    private long events;
+    private long skipped;
+
+    private KeystrokeStats() {
+    }
+
+    /**
+     * Starts collecting into a fresh set of statistics.
+     *
+     * @return The statistics being collected.
+     */
+    public static KeystrokeStats enable() {
+        KeystrokeStats stats = new KeystrokeStats();
+        active = stats;
+        return stats;
+    }
+
+    public static void disable() {
+        active = null;
+    }
+
+    /**
+     * @return The statistics being collected, or null when collection is off.
+     */
+    public static KeystrokeStats active() {
+        return active;
+    }
+
+    synchronized void decoded(long nanos) {
+        decode.record(nanos);
+    }
+
+    synchronized void mapped(long nanos) {
+        map.record(nanos);
+    }
+
+    synchronized void skippedCharacter() {
+        skipped++;
+    }
+
+    synchronized void dispatched(long nanos, int eventCount, int characterCount) {
+        dispatch.record(nanos);
+        events += eventCount;
+        characters += characterCount;
+    }
+
+    synchronized void paced(long nanos) {
+        pacingWait.record(nanos);
+    }
+
+    public synchronized long characters() {
+        return characters;
+    }
+
+    public synchronized long events() {
+        return events;
+    }
+
+    /**
+     * @return The number of characters dropped because no key produces them.
+     */
+    public synchronized long skipped() {
+        return skipped;
+    }
+
+    public LatencyHistogram dispatchLatency() {
+        return dispatch;
+    }
+
+    /**
+     * @return A multi-line summary of the counters and of every phase's latency, in microseconds.
+     */
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Characters: %d, events: %d, skipped characters: %d%n", characters, events, skipped));
+        summary.append(String.format("%-12s %10s %10s %10s %10s %10s %12s%n", "phase (us)", "count", "p50", "p99", "p99.9", "max", "total"));
+        for (LatencyHistogram histogram : new LatencyHistogram[]{decode, map, dispatch, pacingWait}) {
+            summary.append(histogram.summary()).append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example;
+
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the keystroke backends available on the class path, loaded once through {@link ServiceLoader}.
+ */
+public final class KeystrokeStrategies {
+
+    private KeystrokeStrategies() {
+    }
+
+    /**
+     * @return Every registered provider, in class path order.
+     */
+    public static List<KeystrokeStrategyProvider> providers() {
+        return Registry.PROVIDERS;
+    }
+
+    /**
+     * @param name The backend name, without the leading {@code --}.
+     * @return The provider with that name, ignoring case, or {@code null} if none is registered.
+     */
+    public static KeystrokeStrategyProvider find(String name) {
+        for (KeystrokeStrategyProvider provider : Registry.PROVIDERS) {
+            if (provider.name().equalsIgnoreCase(name)) return provider;
+        }
+        return null;
+    }
+
+    /**
+     * Holds the providers, so the service lookup runs on first use rather than when this class is loaded.
+     */
+    private static final class Registry {
+        static final List<KeystrokeStrategyProvider> PROVIDERS = ServiceLoader.load(KeystrokeStrategyProvider.class)
+                .stream()
+                .map(ServiceLoader.Provider::get)
+                .toList();
+    }
+}
@@ -1,5 +1,107 @@
 package com.example;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+
 public interface KeystrokeStrategy {
-    void simulateTyping(String text);
+
+    default void simulateTyping(String text) {
+        replay(compile(text));
+    }
+
+    /**
+     * Types text as it is read, without holding the whole input in memory.
+     *
+     * @param reader The source of the text.
+     * @throws IOException If reading fails.
+     */
+    default void simulateTyping(Reader reader) throws IOException {
+        StreamingInput.type(this, reader);
+    }
+
+    /**
+     * Types UTF-8 text as it is read, without holding the whole input in memory.
+     *
+     * @param channel The source of the UTF-8 bytes.
+     * @throws IOException If reading fails.
+     */
+    default void simulateTyping(ReadableByteChannel channel) throws IOException {
+        StreamingInput.type(this, channel);
+    }
+
+    /**
+     * @return The compiler producing the kind of events this strategy replays. Key codes by default.
+     */
+    default KeystrokeCompiler compiler() {
+        return KeystrokeCompiler.KEY_CODES;
+    }
+
+    /**
+     * Compiles text into the kind of events this strategy replays, through the {@link PlanCache} when caching is on.
+     *
+     * @param text The text to compile.
+     * @return The compiled plan.
+     */
+    default KeystrokePlan compile(CharSequence text) {
+        PlanCache cache = PlanCache.active();
+        return cache != null ? cache.compile(compiler(), text) : compiler().compile(text);
+    }
+
+    /**
+     * Types a precompiled plan.
+     *
+     * @param plan The plan to replay.
+     */
+    void replay(KeystrokePlan plan);
+
+    /**
+     * Called before the first plan of each job is replayed. Backends restart their pacer's schedule here, so a job is
+     * neither paced nor reported against the jobs typed before it.
+     */
+    default void startJob() {
+    }
+
+    /**
+     * Called once a job started with {@link #startJob()} has ended, after its last plan or when it was cancelled or
+     * failed part way. Backends release what they hold for the job here.
+     */
+    default void endJob() {
+    }
+
+    /**
+     * @return True if {@link #syncNanos()} measures something, so {@link AdaptivePacer} can use it as feedback.
+     */
+    default boolean hasFeedback() {
+        return false;
+    }
+
+    /**
+     * Waits until the events posted so far have been processed, as far as this backend can tell, and measures how
+     * long that took. {@link AdaptivePacer} uses it as its congestion signal.
+     *
+     * @return The wait in nanoseconds, or -1 if the backend has no way to tell, see {@link #hasFeedback()}.
+     */
+    default long syncNanos() {
+        return -1;
+    }
+
+    /**
+     * Posts a single packed {@link KeystrokePlan} event.
+     *
+     * @param event The event to post.
+     */
+    void dispatchEvent(int event);
+
+    /**
+     * Posts a run of events. Backends that can post many events per native call override this; the default posts
+     * them one at a time.
+     *
+     * @param batch The events to post.
+     */
+    default void dispatch(KeyEventBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            dispatchEvent(batch.event(i));
+        }
+    }
 }
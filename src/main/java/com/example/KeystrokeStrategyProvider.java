@@ -0,0 +1,57 @@
+package com.example;
+
+/**
+ * Service provider for a keystroke backend, registered in
+ * {@code META-INF/services/com.example.KeystrokeStrategyProvider} and found through {@link KeystrokeStrategies}.
+ * <p>
+ * Providers are instantiated whenever the registry is listed, so they must not touch their backend class until
+ * {@link #create(Pacer, KeyLayout)} is called. This keeps unused backends, and the native libraries they load,
+ * from ever being initialized.
+ */
+public interface KeystrokeStrategyProvider {
+
+    /**
+     * @return The backend's name, selected on the command line as {@code --<name>}.
+     */
+    String name();
+
+    /**
+     * @return A one-line description for the usage text.
+     */
+    String description();
+
+    /**
+     * Initializes the backend.
+     *
+     * @param pacer  The pacer scheduling the characters.
+     * @param layout The keyboard layout of the target, for backends that send key codes.
+     * @return The strategy typing through this backend.
+     */
+    KeystrokeStrategy create(Pacer pacer, KeyLayout layout);
+
+    /**
+     * Returns the compiler producing this backend's events, for compiling text ahead of time. The default creates
+     * the backend; backends whose events do not depend on a live instance return their compiler directly.
+     *
+     * @param layout The keyboard layout of the target.
+     * @param target The backend-specific target name, or {@code null} for the default target.
+     * @return The compiler.
+     */
+    default KeystrokeCompiler compiler(KeyLayout layout, String target) {
+        return create(Pacer.unpaced(), layout, target).compiler();
+    }
+
+    /**
+     * Initializes the backend bound to one of several targets, such as a display or screen, so one process can type
+     * into many of them at once. Backends that cannot choose a target only accept {@code null}.
+     *
+     * @param pacer  The pacer scheduling the characters.
+     * @param layout The keyboard layout of the target, for backends that send key codes.
+     * @param target The backend-specific target name, or {@code null} for the default target.
+     * @return The strategy typing into that target.
+     */
+    default KeystrokeStrategy create(Pacer pacer, KeyLayout layout, String target) {
+        if (target != null) throw new IllegalArgumentException("The " + name() + " backend cannot select a target");
+        return create(pacer, layout);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size log-linear latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values are bucketed by power of two, with 16 linear sub-buckets per power, so any recorded value is reported
+ * within about 6% of its true value. Recording is a few arithmetic operations and an array increment, with no
+ * allocation. A histogram has a single writer thread; read it after that thread has finished.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos The latency to record, in nanoseconds. Negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[index(value)]++;
+        count++;
+        total += value;
+        if (value > max) max = value;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket holding the value at that percentile, so the estimate errs high.
+     */
+    public long percentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i + 1 < BUCKETS ? Math.min(lowerBound(i + 1) - 1, max) : max;
+        }
+        return max;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long totalNanos() {
+        return total;
+    }
+
+    public long maxNanos() {
+        return max;
+    }
+
+    /**
+     * @return One line with the count, p50, p99, p99.9, max and total, in microseconds.
+     */
+    public String summary() {
+        return String.format("%-12s %10d %10.1f %10.1f %10.1f %10.1f %12.1f",
+                name, count, micros(percentile(50)), micros(percentile(99)), micros(percentile(99.9)),
+                micros(max), micros(total));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces keystrokes against absolute {@link System#nanoTime()} deadlines.
+ * <p>
+ * Each call to {@link #pace()} waits for the next deadline, which is always one interval after the previous
+ * deadline rather than after the previous wake-up, so sleep overshoot does not accumulate over a long run. Long
+ * waits park the thread and spin only for the last stretch, which keeps sub-millisecond intervals accurate.
+ */
+public class Pacer {
+
+    /**
+     * Waits shorter than this are spun rather than parked, since parking can overshoot by about this much.
+     */
+    static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    /**
+     * How many intervals the pacer may fall behind and then catch up on in a burst. Beyond that the schedule is
+     * reset, so a stall does not turn into a flood of keystrokes the target may drop.
+     */
+    static final int MAX_CATCH_UP_INTERVALS = 8;
+
+    private long intervalNanos;
+    private boolean started;
+    private long startNanos;
+    private long deadline;
+    private long ticks;
+    private long lastTickNanos;
+
+    Pacer(long intervalNanos) {
+        if (intervalNanos < 0) throw new IllegalArgumentException("Interval cannot be negative: " + intervalNanos);
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * @param delayMillis The delay between keystrokes in milliseconds.
+     * @return A pacer with a fixed delay between keystrokes.
+     */
+    public static Pacer ofDelayMillis(long delayMillis) {
+        return new Pacer(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    /**
+     * @param charactersPerSecond The target typing rate.
+     * @return A pacer typing at the given rate.
+     */
+    public static Pacer ofRate(double charactersPerSecond) {
+        if (!(charactersPerSecond > 0)) {
+            throw new IllegalArgumentException("Rate must be positive: " + charactersPerSecond);
+        }
+        return new Pacer(Math.round(TimeUnit.SECONDS.toNanos(1) / charactersPerSecond));
+    }
+
+    /**
+     * @return A pacer that never waits.
+     */
+    public static Pacer unpaced() {
+        return new Pacer(0);
+    }
+
+    public long intervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * Changes the interval from the next character on, without restarting the schedule.
+     */
+    void setIntervalNanos(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Starts a new schedule. Called implicitly by the first {@link #pace()}.
+     */
+    public void start() {
+        started = true;
+        startNanos = System.nanoTime();
+        deadline = startNanos;
+        lastTickNanos = startNanos;
+        ticks = 0;
+    }
+
+    /**
+     * Marks one character as typed and waits until the next one is due.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void pace() throws InterruptedException {
+        if (!started) start();
+        ticks++;
+        deadline += intervalNanos;
+
+        long now = System.nanoTime();
+        if (now - deadline > intervalNanos * MAX_CATCH_UP_INTERVALS) {
+            deadline = now; // Too far behind, restart the schedule from here
+        }
+
+        long remaining;
+        while ((remaining = deadline - now) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(this, remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+            if (Thread.interrupted()) throw new InterruptedException("Interrupted while pacing keystrokes");
+            now = System.nanoTime();
+        }
+        lastTickNanos = now;
+    }
+
+    /**
+     * Counts characters typed without waiting, for runs that are dispatched in bulk.
+     *
+     * @param characters The number of characters typed.
+     */
+    public void advance(int characters) {
+        if (!started) start();
+        ticks += characters;
+        lastTickNanos = System.nanoTime();
+    }
+
+    /**
+     * @return The number of characters paced since the schedule started.
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return The target rate in characters per second, or infinity when unpaced.
+     */
+    public double targetRate() {
+        return intervalNanos == 0 ? Double.POSITIVE_INFINITY : (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    /**
+     * @return The achieved rate in characters per second since the schedule started.
+     */
+    public double achievedRate() {
+        long elapsed = lastTickNanos - startNanos;
+        return elapsed <= 0 ? 0 : ticks * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * @return A one-line summary of the achieved rate against the target.
+     */
+    public String report() {
+        double seconds = (lastTickNanos - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        String target = intervalNanos == 0 ? "unpaced" : String.format("%.1f cps", targetRate());
+        return String.format("Typed %d characters in %.3f s (%.1f cps, target %s)", ticks, seconds, achievedRate(), target);
+    }
+}
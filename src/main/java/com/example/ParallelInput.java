@@ -0,0 +1,122 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Compiles a large file ahead of typing on every core, instead of on the single planning thread.
+ * <p>
+ * The file is cut into segments of about {@link #SEGMENT_SIZE} bytes, each ending where a UTF-8 sequence starts, so
+ * no character, surrogate pair included, is split between two segments. Segments are mapped, decoded and compiled
+ * into plans in parallel on a {@link ForkJoinPool}, and their plans are handed to the sink strictly in file order
+ * through a reorder window: at most {@code window} segments are in flight, and a new one is only started once the
+ * oldest has been handed over. Memory use is therefore bounded by the window, not by the file, and a sink that
+ * blocks, such as a full dispatch queue, stops compiling too.
+ */
+public final class ParallelInput {
+
+    /**
+     * Number of bytes compiled per task, about.
+     */
+    public static final int SEGMENT_SIZE = 256 * 1024;
+
+    private ParallelInput() {
+    }
+
+    /**
+     * @param pool The pool the segments are compiled on.
+     * @return A reorder window of twice the pool's parallelism, so every worker has a segment queued behind the one
+     * it is compiling.
+     */
+    public static int defaultWindow(ForkJoinPool pool) {
+        return 2 * pool.getParallelism();
+    }
+
+    /**
+     * Compiles a whole file into plans of at most {@link StreamingInput#CHUNK_SIZE} characters each, in parallel.
+     * Compilers whose output depends on the text compiled before are run on the calling thread instead, through
+     * {@link StreamingInput#planMapped(KeystrokeCompiler, FileChannel, long, Consumer)}.
+     *
+     * @param compiler The compiler producing the plans.
+     * @param channel  The file to compile.
+     * @param pool     The pool compiling the segments.
+     * @param window   The most segments compiled or waiting to be handed over at once.
+     * @param sink     Receives the plans in file order, on the calling thread.
+     * @throws IOException If mapping fails.
+     */
+    public static void plan(KeystrokeCompiler compiler, FileChannel channel, ForkJoinPool pool, int window,
+                            Consumer<KeystrokePlan> sink) throws IOException {
+        if (window < 1) throw new IllegalArgumentException("Reorder window must be positive: " + window);
+        if (!compiler.isStateless()) {
+            StreamingInput.planMapped(compiler, channel, StreamingInput.MAPPED_WINDOW_SIZE, sink);
+            return;
+        }
+
+        ArrayDeque<ForkJoinTask<List<KeystrokePlan>>> inFlight = new ArrayDeque<>(window);
+        long size = channel.size();
+        long position = 0;
+        try {
+            while ((position < size || !inFlight.isEmpty()) && !Thread.currentThread().isInterrupted()) {
+                if (position < size && inFlight.size() < window) {
+                    // Map a few bytes past the segment to find where the next character starts
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE + 3L, size - position));
+                    int end = position + mapped.limit() == size ? mapped.limit() : boundary(mapped, SEGMENT_SIZE);
+                    ByteBuffer segment = mapped.limit(end);
+                    inFlight.add(pool.submit(() -> compileSegment(compiler, segment)));
+                    position += end;
+                    continue;
+                }
+                for (KeystrokePlan plan : inFlight.peek().join()) { // Oldest first, so plans keep their file order
+                    sink.accept(plan);
+                }
+                inFlight.poll();
+            }
+        } finally {
+            for (ForkJoinTask<?> task : inFlight) {
+                task.cancel(false); // Stopped early, drop the segments compiled ahead
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of the last byte at or before {@code end} that starts a UTF-8 sequence, or {@code end}
+     * itself when the bytes there are not UTF-8, so malformed input still makes progress. A CRLF is kept in one
+     * segment, as segments are compiled with separate builders.
+     */
+    static int boundary(ByteBuffer bytes, int end) {
+        for (int i = end; i > end - 4 && i > 0; i--) {
+            if (bytes.get(i) == '\n' && bytes.get(i - 1) == '\r') return i - 1;
+            if ((bytes.get(i) & 0xc0) != 0x80) return i; // Not a continuation byte
+        }
+        return end;
+    }
+
+    /**
+     * Decodes one segment with its own decoder and compiles it, one {@link StreamingInput#CHUNK_SIZE} at a time.
+     */
+    private static List<KeystrokePlan> compileSegment(KeystrokeCompiler compiler, ByteBuffer segment) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(StreamingInput.CHUNK_SIZE);
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(StreamingInput.CHUNK_SIZE * 2);
+        List<KeystrokePlan> plans = new ArrayList<>(segment.remaining() / StreamingInput.CHUNK_SIZE + 1);
+        StreamingInput.decode(decoder, segment, chars, true, compiler, builder, plans::add);
+        decoder.flush(chars);
+        chars.flip();
+        StreamingInput.typeChunk(compiler, chars, builder, plans::add);
+        return plans;
+    }
+}
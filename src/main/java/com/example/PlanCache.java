@@ -0,0 +1,163 @@
+package com.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Content-addressed cache of compiled plans, so text typed again goes straight to dispatch without any mapping work.
+ * <p>
+ * Entries are keyed by a 64-bit hash of the text and by the compiler, which stands for the backend and keyboard
+ * layout the plan was resolved for. The text is kept with the plan and compared on every hit, so a hash collision
+ * costs a miss, never a wrong plan. The cache is bounded by the estimated memory of its entries and evicts the least
+ * recently used ones first. It is safe to share between jobs; compiling happens outside the lock.
+ * <p>
+ * Like {@link KeystrokeStats}, caching is off unless {@link #enable(long)} has been called.
+ */
+public final class PlanCache {
+
+    /**
+     * Rough per-entry overhead of the key, entry, map node and array headers.
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private static volatile PlanCache active;
+
+    private record Key(KeystrokeCompiler compiler, long hash, int length) {
+    }
+
+    private record Entry(String text, KeystrokePlan plan, long bytes) {
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // Guarded by this
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes The most memory the cached plans and texts may take, estimated.
+     */
+    public PlanCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Starts caching compiled plans in a fresh cache shared by every strategy.
+     *
+     * @param maxBytes The memory bound of the cache.
+     * @return The cache in use.
+     */
+    public static PlanCache enable(long maxBytes) {
+        PlanCache cache = new PlanCache(maxBytes);
+        active = cache;
+        return cache;
+    }
+
+    public static void disable() {
+        active = null;
+    }
+
+    /**
+     * @return The shared cache, or null when caching is off.
+     */
+    public static PlanCache active() {
+        return active;
+    }
+
+    /**
+     * Returns the cached plan for the text, compiling and caching it on a miss.
+     *
+     * @param compiler The compiler resolving the text. Plans of stateful compilers are never cached.
+     * @param text     The text to compile.
+     * @return The plan, finished so that no modifier is left held.
+     */
+    public KeystrokePlan compile(KeystrokeCompiler compiler, CharSequence text) {
+        if (!compiler.isStateless()) return compiler.compile(text);
+        Key key = new Key(compiler, hash(text), text.length());
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.text().contentEquals(text)) {
+                hits++;
+                return entry.plan();
+            }
+            misses++;
+        }
+
+        KeystrokePlan plan = compiler.compile(text);
+        String copy = text.toString(); // Buffers passed in are reused by the caller
+        Entry entry = new Entry(copy, plan, estimateBytes(copy, plan));
+        if (entry.bytes() <= maxBytes) {
+            synchronized (this) {
+                Entry previous = entries.put(key, entry);
+                bytes += entry.bytes() - (previous != null ? previous.bytes() : 0);
+                evict();
+            }
+        }
+        return plan;
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units.
+     */
+    static long hash(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long estimateBytes(String text, KeystrokePlan plan) {
+        long pasted = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            if (KeystrokePlan.op(plan.event(i)) == KeystrokePlan.OP_PASTE) {
+                pasted += 2L * plan.paste(KeystrokePlan.operand(plan.event(i))).length();
+            }
+        }
+        return ENTRY_OVERHEAD_BYTES + 2L * text.length() + 4L * plan.size() + pasted;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The estimated memory taken by the cached entries.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return One line with the hit rate, the entry count and the memory used.
+     */
+    public synchronized String summary() {
+        long lookups = hits + misses;
+        return String.format("Plan cache: %d hits, %d misses (%.1f%% hit rate), %d entries, %d evictions, %.1f of %.1f MB",
+                hits, misses, lookups == 0 ? 0 : 100.0 * hits / lookups, entries.size(), evictions,
+                bytes / (1024.0 * 1024), maxBytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Typing rates learned by {@link AdaptivePacer}, remembered per target profile in a properties file.
+ */
+public final class RateProfiles {
+
+    /**
+     * Default location of the profiles: {@code ~/.texttokeystroke/rates.properties}.
+     */
+    public static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".texttokeystroke", "rates.properties");
+
+    private final Path file;
+    private final Properties rates = new Properties();
+
+    private RateProfiles(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param file The properties file. A missing file holds no profiles.
+     * @return The profiles stored in the file.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public static RateProfiles load(Path file) throws IOException {
+        RateProfiles profiles = new RateProfiles(file);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                profiles.rates.load(reader);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * @param profile     The target profile.
+     * @param defaultRate The rate to use when nothing has been learned for the profile.
+     * @return The learned rate in characters per second.
+     */
+    public double rate(String profile, double defaultRate) {
+        String rate = rates.getProperty(profile);
+        if (rate == null) return defaultRate;
+        try {
+            return Double.parseDouble(rate);
+        } catch (NumberFormatException e) {
+            return defaultRate;
+        }
+    }
+
+    public void put(String profile, double rate) {
+        rates.setProperty(profile, String.format(Locale.ROOT, "%.1f", rate));
+    }
+
+    /**
+     * Writes the profiles back, creating the parent directory if needed.
+     */
+    public void save() throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            rates.store(writer, "Typing rates learned per target, in characters per second");
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.example;
 
 import java.awt.*;
-import java.awt.event.KeyEvent;
 
 public class RobotKeystroke implements KeystrokeStrategy {
 
-    private final int delay;
+    private final Pacer pacer;
     private final Robot robot;
+    private final KeystrokeCompiler compiler;
+    private final KeyEventBatch batch = new KeyEventBatch();
 
     public static class RobotInitializationException extends RuntimeException {
         public RobotInitializationException(String message, Throwable cause) {
@@ -14,75 +15,123 @@ public class RobotKeystroke implements KeystrokeStrategy {
         }
     }
 
+    /**
+     * Registers this backend as {@code --robot}.
+     */
+    public static class Provider implements KeystrokeStrategyProvider {
+        @Override
+        public String name() {
+            return "robot";
+        }
+
+        @Override
+        public String description() {
+            return "Use Robot-based keystroke simulation.";
+        }
+
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout) {
+            return new RobotKeystroke(pacer, layout);
+        }
+
+        @Override
+        public KeystrokeCompiler compiler(KeyLayout layout, String target) {
+            return KeystrokeCompiler.forLayout(robotLayout(layout)); // Key codes are the same on every screen
+        }
+
+        /**
+         * @param target The screen's index or its {@link GraphicsDevice#getIDstring() id}, such as {@code :0.1}.
+         */
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout, String target) {
+            if (target == null) return create(pacer, layout);
+            GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+            for (int i = 0; i < screens.length; i++) {
+                if (target.equals(String.valueOf(i)) || target.equals(screens[i].getIDstring())) {
+                    return new RobotKeystroke(pacer, layout, screens[i]);
+                }
+            }
+            throw new IllegalArgumentException("Unknown screen: " + target);
+        }
+    }
+
     public RobotKeystroke(int delay) {
-        this.delay = delay;
+        this(Pacer.ofDelayMillis(delay));
+    }
+
+    public RobotKeystroke(Pacer pacer) {
+        this(pacer, KeyLayout.US);
+    }
+
+    public RobotKeystroke(Pacer pacer, KeyLayout layout) {
+        this(pacer, layout, null);
+    }
+
+    /**
+     * @param pacer  The pacer scheduling the characters.
+     * @param layout The keyboard layout of the target.
+     * @param screen The screen to type on, or {@code null} for the default screen.
+     */
+    public RobotKeystroke(Pacer pacer, KeyLayout layout, GraphicsDevice screen) {
+        this.pacer = pacer;
+        this.compiler = KeystrokeCompiler.forLayout(robotLayout(layout));
         try {
-            this.robot = new Robot();
+            this.robot = screen != null ? new Robot(screen) : new Robot();
         } catch (AWTException e) {
             throw new RobotInitializationException("Error creating Robot instance: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Returns the layout as Robot reads key codes on this platform: by key position on macOS, and by the character
+     * of the key on the system's active layout everywhere else.
+     */
+    static KeyLayout robotLayout(KeyLayout layout) {
+        return System.getProperty("os.name").startsWith("Mac") ? layout : layout.symbolic();
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
     @Override
-    public void simulateTyping(String text) {
+    public void replay(KeystrokePlan plan) {
         try {
-            for (char c : text.toCharArray()) {
-                typeCharacter(robot, c);
-                Thread.sleep(delay); // Slight delay between keystrokes
-            }
+            KeyEventBatch.replay(this, plan, pacer, batch);
         } catch (Exception e) {
             System.err.println("Robot keystroke error: " + e.getMessage());
             if (e instanceof InterruptedException) Thread.currentThread().interrupt();
         }
     }
 
-    private void typeCharacter(Robot robot, char character) {
-        int keyCode = getKeyCodeForCharacter(character);  // Get the correct keycode for the character
-        if (keyCode == KeyEvent.VK_UNDEFINED)
-            return;
-
-        // Handle Shift key if needed (e.g., for +, *, ?, and uppercase letters)
-        if (requiresShift(character)) {
-            robot.keyPress(KeyEvent.VK_SHIFT);  // Press Shift key
-        }
-
-        // Press the key and release it
-        robot.keyPress(keyCode);
-        robot.keyRelease(keyCode);
-
-        // Release the Shift key if it was pressed
-        if (requiresShift(character)) {
-            robot.keyRelease(KeyEvent.VK_SHIFT);
-        }
-
-        // Add the delay between keystrokes
-        robot.delay(delay);
+    @Override
+    public void startJob() {
+        pacer.start();
     }
 
+    @Override
+    public boolean hasFeedback() {
+        return true;
+    }
 
     /**
-     * Gets the keycode for the character, handling special cases for Base64 and common symbols.
-     * Handles characters like +, /, =, and others that need special handling.
+     * Measures {@link Robot#waitForIdle()}, which grows when the event queue backs up.
      */
-    private static int getKeyCodeForCharacter(char character) {
-        switch (character) {
-            case '+':
-                return KeyEvent.VK_EQUALS;  // '+' requires Shift with the '=' key
-            case '/':
-                return KeyEvent.VK_SLASH;   // '/' key
-            case '=':
-                return KeyEvent.VK_EQUALS;  // '=' key
-            // Handle additional special characters if needed
-            default:
-                return KeyEvent.getExtendedKeyCodeForChar(character);  // Default case for normal characters
-        }
+    @Override
+    public long syncNanos() {
+        long start = System.nanoTime();
+        robot.waitForIdle();
+        return System.nanoTime() - start;
     }
 
-    /**
-     * Determines if a character requires the Shift key to be pressed.
-     * This is true for uppercase letters and symbols like +, *, ?, ".
-     */
-    private static boolean requiresShift(char character) {
-        return Character.isUpperCase(character) || "+*?\"".indexOf(character) >= 0;
+    @Override
+    public void dispatchEvent(int event) {
+        int keyCode = KeystrokePlan.operand(event);
+        if (KeystrokePlan.op(event) == KeystrokePlan.OP_PRESS) {
+            robot.keyPress(keyCode);
+        } else {
+            robot.keyRelease(keyCode);
+        }
     }
 }
@@ -0,0 +1,65 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread.
+ * <p>
+ * Each side owns one index and only publishes it with an ordered write, so neither {@link #offer(Object)} nor
+ * {@link #poll()} ever takes a lock or retries a CAS.
+ *
+ * @param <E> The element type.
+ */
+public final class SpscQueue<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next slot to poll, written by the consumer only
+    private final AtomicLong tail = new AtomicLong(); // Next slot to offer, written by the producer only
+
+    /**
+     * @param capacity The maximum number of elements, rounded up to a power of two.
+     */
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element. Producer thread only.
+     *
+     * @return False if the queue is full.
+     */
+    public boolean offer(E element) {
+        long t = tail.get();
+        if (t - head.get() == buffer.length()) return false;
+        buffer.lazySet((int) (t & mask), element);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element. Consumer thread only.
+     *
+     * @return The element, or null if the queue is empty.
+     */
+    public E poll() {
+        long h = head.get();
+        if (h == tail.get()) return null;
+        int index = (int) (h & mask);
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length();
+    }
+}
@@ -0,0 +1,262 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Feeds a {@link KeystrokeStrategy}, or any consumer of plans, from a stream, one chunk at a time.
+ * <p>
+ * Input is decoded into a reusable {@link CharBuffer}, compiled into a reusable plan builder and replayed before
+ * the next chunk is read, so memory use does not depend on the input size and typing starts as soon as the first
+ * chunk is available.
+ * <p>
+ * Input is typed exactly as it is read: a file ending with a line break ends with Enter, as piped input always has.
+ * CRLF and lone CR line breaks type one Enter each, even when a chunk ends between the CR and the LF.
+ */
+public final class StreamingInput {
+
+    /**
+     * Number of characters decoded and typed per chunk.
+     */
+    public static final int CHUNK_SIZE = 8192;
+    /**
+     * Number of bytes mapped at once by {@link #typeMapped(KeystrokeStrategy, FileChannel, long)}.
+     */
+    public static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private StreamingInput() {
+    }
+
+    /**
+     * Types everything the reader produces.
+     *
+     * @param strategy The strategy that types the text.
+     * @param reader   The source of the text.
+     * @throws IOException If reading fails.
+     */
+    public static void type(KeystrokeStrategy strategy, Reader reader) throws IOException {
+        plan(strategy.compiler(), reader, strategy::replay);
+        end(strategy.compiler(), strategy::replay);
+    }
+
+    /**
+     * Compiles everything the reader produces into a sequence of plans, one per chunk.
+     *
+     * @param compiler The compiler producing the plans.
+     * @param reader   The source of the text.
+     * @param sink     Receives each plan as soon as its chunk is compiled.
+     * @throws IOException If reading fails.
+     */
+    public static void plan(KeystrokeCompiler compiler, Reader reader, Consumer<KeystrokePlan> sink) throws IOException {
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(CHUNK_SIZE * 2);
+        KeystrokeStats stats = KeystrokeStats.active();
+        while (true) {
+            long started = stats != null ? System.nanoTime() : 0;
+            int read = reader.read(chars);
+            if (stats != null) stats.decoded(System.nanoTime() - started);
+            if (read == -1) break;
+            chars.flip();
+            int end = chars.limit();
+            if (Character.isHighSurrogate(chars.get(end - 1))) chars.limit(end - 1); // Keep pairs together
+            typeChunk(compiler, chars, builder, sink);
+            chars.position(chars.limit()).limit(end);
+            chars.compact(); // Keep a held back high surrogate for the next read
+            if (Thread.currentThread().isInterrupted()) return;
+        }
+        chars.flip();
+        typeChunk(compiler, chars, builder, sink); // A lone high surrogate at the end of the input
+    }
+
+    /**
+     * Types everything the channel produces, decoding it incrementally as UTF-8. Malformed input is replaced
+     * rather than rejected, so a bad byte does not abort a long run.
+     *
+     * @param strategy The strategy that types the text.
+     * @param channel  The source of the UTF-8 bytes.
+     * @throws IOException If reading fails.
+     */
+    public static void type(KeystrokeStrategy strategy, ReadableByteChannel channel) throws IOException {
+        plan(strategy.compiler(), channel, strategy::replay);
+        end(strategy.compiler(), strategy::replay);
+    }
+
+    /**
+     * Compiles everything the channel produces into a sequence of plans, one per chunk, decoding it incrementally
+     * as UTF-8. When the {@link PlanCache} is on, the first {@link #CHUNK_SIZE} bytes are read before anything is
+     * compiled, so an input that ends within them, such as a daemon job, is looked up whole; longer input is streamed
+     * past the cache.
+     *
+     * @param compiler The compiler producing the plans.
+     * @param channel  The source of the UTF-8 bytes.
+     * @param sink     Receives each plan as soon as its chunk is compiled.
+     * @throws IOException If reading fails.
+     */
+    public static void plan(KeystrokeCompiler compiler, ReadableByteChannel channel, Consumer<KeystrokePlan> sink)
+            throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(CHUNK_SIZE * 2);
+
+        boolean endOfInput = false;
+        PlanCache cache = PlanCache.active();
+        if (cache != null) {
+            while (bytes.hasRemaining() && !endOfInput && !Thread.currentThread().isInterrupted()) {
+                endOfInput = channel.read(bytes) == -1;
+            }
+            if (endOfInput) {
+                bytes.flip();
+                KeystrokeStats stats = KeystrokeStats.active();
+                long started = stats != null ? System.nanoTime() : 0;
+                CharBuffer text = decoder.decode(bytes);
+                if (stats != null) stats.decoded(System.nanoTime() - started);
+                if (text.hasRemaining()) sink.accept(cache.compile(compiler, text));
+                return;
+            }
+        }
+        while (!endOfInput && !Thread.currentThread().isInterrupted()) {
+            endOfInput = channel.read(bytes) == -1;
+            bytes.flip();
+            decode(decoder, bytes, chars, endOfInput, compiler, builder, sink);
+            bytes.compact(); // Keep any incomplete multi-byte sequence for the next read
+        }
+        if (endOfInput) {
+            decoder.flush(chars);
+            chars.flip();
+            typeChunk(compiler, chars, builder, sink);
+        }
+    }
+
+    /**
+     * Types a whole file by mapping it into memory one window at a time and decoding straight from the mapping, so
+     * the bytes are never copied onto the heap. A multi-byte sequence cut by the end of a window is left undecoded
+     * and the next window starts at its first byte.
+     *
+     * @param strategy   The strategy that types the text.
+     * @param channel    The file to type.
+     * @param windowSize The maximum number of bytes mapped at once.
+     * @throws IOException If mapping fails.
+     */
+    public static void typeMapped(KeystrokeStrategy strategy, FileChannel channel, long windowSize) throws IOException {
+        planMapped(strategy.compiler(), channel, windowSize, strategy::replay);
+        end(strategy.compiler(), strategy::replay);
+    }
+
+    /**
+     * Compiles a whole memory-mapped file into a sequence of plans, one per chunk.
+     *
+     * @param compiler   The compiler producing the plans.
+     * @param channel    The file to compile.
+     * @param windowSize The maximum number of bytes mapped at once.
+     * @param sink       Receives each plan as soon as its chunk is compiled.
+     * @throws IOException If mapping fails.
+     */
+    public static void planMapped(KeystrokeCompiler compiler, FileChannel channel, long windowSize,
+                                  Consumer<KeystrokePlan> sink) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(CHUNK_SIZE * 2);
+
+        long size = channel.size();
+        long position = 0;
+        while (position < size && !Thread.currentThread().isInterrupted()) {
+            long length = Math.min(windowSize, size - position);
+            boolean endOfInput = position + length == size;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            decode(decoder, window, chars, endOfInput, compiler, builder, sink);
+            if (!endOfInput && window.position() == 0) {
+                throw new IOException("Window of " + windowSize + " bytes is too small to decode at offset " + position);
+            }
+            position += window.position();
+            if (endOfInput) {
+                decoder.flush(chars);
+                chars.flip();
+                typeChunk(compiler, chars, builder, sink);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Compiles text into a sequence of plans of at most {@link #CHUNK_SIZE} characters each. Text no longer than one
+     * chunk goes through the {@link PlanCache} when it is on.
+     *
+     * @param compiler The compiler producing the plans.
+     * @param text     The text to compile.
+     * @param sink     Receives each plan as soon as its chunk is compiled.
+     */
+    public static void plan(KeystrokeCompiler compiler, CharSequence text, Consumer<KeystrokePlan> sink) {
+        PlanCache cache = PlanCache.active();
+        if (cache != null && text.length() <= CHUNK_SIZE) {
+            if (text.length() > 0) sink.accept(cache.compile(compiler, text));
+            return;
+        }
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(CHUNK_SIZE * 2);
+        int start = 0;
+        while (start < text.length() && !Thread.currentThread().isInterrupted()) {
+            int end = Math.min(start + CHUNK_SIZE, text.length());
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end--; // Keep pairs together
+            typeChunk(compiler, text.subSequence(start, end), builder, sink);
+            start = end;
+        }
+    }
+
+    /**
+     * Compiles the text a stateful compiler held back for the end of the input, once every chunk has been planned.
+     *
+     * @param compiler The compiler that planned the input.
+     * @param sink     Receives the plan, if anything was held back.
+     */
+    public static void end(KeystrokeCompiler compiler, Consumer<KeystrokePlan> sink) {
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(16);
+        compiler.end(builder);
+        compiler.finish(builder);
+        if (builder.size() > 0) sink.accept(builder.build());
+    }
+
+    /**
+     * Decodes as much of {@code bytes} as possible, compiling each time the character buffer fills up. The sink is
+     * called while {@code chars} holds the text of the plan and {@code bytes} is positioned after its last byte.
+     */
+    static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput,
+                       KeystrokeCompiler compiler, KeystrokePlan.Builder builder, Consumer<KeystrokePlan> sink) {
+        KeystrokeStats stats = KeystrokeStats.active();
+        CoderResult result;
+        do {
+            long started = stats != null ? System.nanoTime() : 0;
+            result = decoder.decode(bytes, chars, endOfInput);
+            if (stats != null) stats.decoded(System.nanoTime() - started);
+            chars.flip();
+            typeChunk(compiler, chars, builder, sink);
+            chars.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Compiles and hands over one chunk of streamed input. Chunks bypass the {@link PlanCache}: they are rarely typed
+     * again, and caching them would copy every one and evict the entries worth keeping.
+     */
+    static void typeChunk(KeystrokeCompiler compiler, CharSequence chars, KeystrokePlan.Builder builder,
+                                  Consumer<KeystrokePlan> sink) {
+        if (chars.length() == 0) return;
+        builder.clear();
+        compiler.compile(chars, 0, chars.length(), builder);
+        compiler.finish(builder);
+        sink.accept(builder.build());
+    }
+}
@@ -162,12 +162,18 @@ public class TextToKeyStroke {
      * Sends a single character as a keystroke using the Robot class.
      */
     private static void sendKeystroke(Robot robot, char character, long delayBetweenKeystrokes) {
-        int keyCode = getKeyCodeForCharacter(character);  // Get the correct keycode for the character
-        if (keyCode == KeyEvent.VK_UNDEFINED)
+        int entry = KeyLayout.US.lookup(character);  // Get the correct keycode and modifiers for the character
+        if (entry == KeyLayout.UNMAPPED)
+            entry = KeystrokeCompiler.fallbackEntry(character);  // Default case: the platform's extended key code
+        if (entry == KeyLayout.UNMAPPED)
             return;
 
-        // Handle Shift key if needed (e.g., for +, *, ?, and uppercase letters)
-        if (requiresShift(character)) {
+        int keyCode = KeyLayout.keyCode(entry);
+        // Handle AltGr and Shift if needed (e.g., for +, *, ?, and uppercase letters)
+        if (KeyLayout.needsAltGraph(entry)) {
+            robot.keyPress(KeyEvent.VK_ALT_GRAPH);
+        }
+        if (KeyLayout.needsShift(entry)) {
             robot.keyPress(KeyEvent.VK_SHIFT);  // Press Shift key
         }
 
@@ -175,42 +181,18 @@ public class TextToKeyStroke {
         robot.keyPress(keyCode);
         robot.keyRelease(keyCode);
 
-        // Release the Shift key if it was pressed
-        if (requiresShift(character)) {
+        // Release the modifiers that were pressed
+        if (KeyLayout.needsShift(entry)) {
             robot.keyRelease(KeyEvent.VK_SHIFT);
         }
+        if (KeyLayout.needsAltGraph(entry)) {
+            robot.keyRelease(KeyEvent.VK_ALT_GRAPH);
+        }
 
         // Add the delay between keystrokes
         robot.delay(safeLongToInt(delayBetweenKeystrokes));
     }
 
-    /**
-     * Determines if a character requires the Shift key to be pressed.
-     * This is true for uppercase letters and symbols like +, *, ?, ".
-     */
-    private static boolean requiresShift(char character) {
-        return Character.isUpperCase(character) || "+*?\"".indexOf(character) >= 0;
-    }
-
-    /**
-     * Gets the keycode for the character, handling special cases for Base64 and common symbols.
-     * Handles characters like +, /, =, and others that need special handling.
-     */
-    private static int getKeyCodeForCharacter(char character) {
-        switch (character) {
-            case '+':
-                return KeyEvent.VK_EQUALS;  // '+' requires Shift with the '=' key
-            case '/':
-                return KeyEvent.VK_SLASH;   // '/' key
-            case '=':
-                return KeyEvent.VK_EQUALS;  // '=' key
-            // Handle additional special characters if needed
-            default:
-                return KeyEvent.getExtendedKeyCodeForChar(character);  // Default case for normal characters
-        }
-    }
-
-
     /**
      * Safely converts a long value to an integer, handling overflow and underflow.
      * If the long value is less than Integer.MIN_VALUE, Integer.MIN_VALUE is returned. If the long value is greater
@@ -1,68 +1,489 @@
 package com.example;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 public class TextToKeyStrokeMain {
 
     protected static final String ARG_ROBOT = "--robot";
     protected static final String ARG_JNA = "--jna";
-    protected static final String ERR_MSG_ROBOT_OR_JNA = "Specify either --robot or --jna, not both.";
+    protected static final String ARG_FILE = "--file";
+    protected static final String ARG_MMAP = "--mmap";
+    protected static final String ARG_RATE = "--rate";
+    protected static final String ARG_XTEST = "--xtest";
+    protected static final String ARG_LAYOUT = "--layout";
+    protected static final String ARG_STATS = "--stats";
+    protected static final String ARG_DAEMON = "--daemon";
+    protected static final String ARG_DELAY = "--delay";
+    protected static final String ARG_ADAPTIVE = "--adaptive";
+    protected static final String ARG_PASTE = "--paste";
+    protected static final String ARG_KEEP_CLIPBOARD = "--keep-clipboard";
+    protected static final String ARG_CACHE = "--cache";
+    protected static final String ARG_TARGET = "--target";
+    protected static final String ARG_COMPILE_TO = "--compile-to";
+    protected static final String ARG_REPLAY = "--replay";
+    protected static final String ARG_RESUME = "--resume";
+    protected static final String ARG_TRANSFORM = "--transform";
+    protected static final String ARG_PARALLEL = "--parallel";
+    protected static final String ARG_INCREMENTAL = "--incremental";
+    protected static final String ERR_MSG_ROBOT_OR_JNA = "Specify only one of --robot, --jna, --xtest, --uinput or --dry-run.";
 
     public static void main(String[] args) {
+        KeystrokeStrategy strategy = null;
         try {
-            KeystrokeStrategy strategy = parseArguments(args);
-            String inputText = getInputText(args);
+            long cacheMegabytes = parseCacheMegabytes(args);
+            if (cacheMegabytes > 0) PlanCache.enable(cacheMegabytes * 1024 * 1024);
+            String socketPath = getDaemonSocket(args);
+            if (socketPath != null) {
+                runDaemon(socketPath, args);
+                return;
+            }
+
+            String compileTo = getArgumentValue(args, ARG_COMPILE_TO);
+            if (compileTo != null) {
+                compileMacro(compileTo, args);
+                return;
+            }
 
-            System.out.println("Waiting 5 seconds to focus on the target window...");
-            Thread.sleep(5000); // Give time to focus on the target window
-            strategy.simulateTyping(inputText);
-            Thread.sleep(500); // Optional: Wait for the last keystroke to be processed
+            Pacer pacer = parsePacer(args);
+            strategy = parseArguments(args, pacer);
+            KeystrokeStats stats = hasArgument(args, ARG_STATS) ? KeystrokeStats.enable() : null;
+            String replayPath = getArgumentValue(args, ARG_REPLAY);
+            if (replayPath != null) {
+                replayMacro(replayPath, strategy, pacer, args);
+            } else {
+                typeInput(strategy, pacer, args);
+            }
+            System.out.println(strategy instanceof DryRunKeystroke dryRun ? dryRun.report() : pacer.report());
+            if (strategy instanceof TransformingKeystroke transform && replayPath == null) System.out.println(transform.report());
+            if (pacer instanceof AdaptivePacer adaptive) saveLearnedRate(getAdaptiveProfile(args), adaptive);
+            if (stats != null) System.out.print(stats.summary());
+            if (stats != null && PlanCache.active() != null) System.out.println(PlanCache.active().summary());
+            if (!(strategy instanceof DryRunKeystroke)) Thread.sleep(500); // Optional: Wait for the last keystroke to be processed
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             if (e instanceof InterruptedException) Thread.currentThread().interrupt();
             printUsage();
+        } finally {
+            closeBackend(strategy);
+        }
+    }
+
+    /**
+     * Releases what the backend holds, such as an X connection or a uinput virtual keyboard, whether typing finished
+     * or failed.
+     */
+    private static void closeBackend(KeystrokeStrategy strategy) {
+        if (!(strategy instanceof AutoCloseable closeable)) return;
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            System.err.println("Error closing the backend: " + e.getMessage());
         }
     }
 
-    private static KeystrokeStrategy parseArguments(String[] args) {
-        int delay = parseDelay(args);
-        boolean robotSelected = false;
-        boolean jnaSelected = false;
+    private static void typeInput(KeystrokeStrategy strategy, Pacer pacer, String[] args) throws Exception {
+        String filePath = getFilePath(args);
+        boolean mapped = hasArgument(args, ARG_MMAP);
+        if (hasArgument(args, ARG_RESUME) && (filePath == null || mapped)) {
+            throw new IllegalArgumentException("--resume needs the --file the checkpoint was saved for.");
+        }
+        boolean parallel = hasArgument(args, ARG_PARALLEL);
+        if (parallel && !mapped) throw new IllegalArgumentException("--parallel needs --mmap.");
+        String incremental = getArgumentValue(args, ARG_INCREMENTAL);
+        if (incremental != null) {
+            if (hasArgument(args, ARG_RESUME) || parallel) throw new IllegalArgumentException("--incremental cannot be combined with --resume or --parallel.");
+            typeIncremental(strategy, incremental, filePath, args);
+            return;
+        }
+        String inputText = filePath == null ? getInputText(args) : null;
+        FileChannel channel = null;
+
+        try (TypingEngine engine = TypingEngine.start(strategy)) {
+            TypingJob job;
+            if (inputText != null) {
+                KeystrokePlan plan = strategy.compile(inputText); // Resolve all key events before typing starts
+                waitForFocus(strategy);
+                job = engine.submit(plan);
+            } else if (mapped) {
+                channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+                waitForFocus(strategy);
+                FileChannel file = channel;
+                job = engine.submit(parallel
+                        ? (compiler, sink) -> ParallelInput.plan(compiler, file, ForkJoinPool.commonPool(), ParallelInput.defaultWindow(ForkJoinPool.commonPool()), sink)
+                        : (compiler, sink) -> StreamingInput.planMapped(compiler, file, StreamingInput.MAPPED_WINDOW_SIZE, sink));
+            } else if (filePath != null) {
+                channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+                TypingCheckpoint checkpoint = TypingCheckpoint.open(Paths.get(filePath), channel, hasArgument(args, ARG_RESUME));
+                if (checkpoint.startByte() > 0) System.out.println("Resuming at character " + checkpoint.startCharacter() + ".");
+                if (strategy instanceof DryRunKeystroke) {
+                    job = engine.submit(checkpoint.source()); // Estimate the rest without saving progress
+                } else {
+                    waitForFocus(strategy);
+                    typeCheckpointed(engine, checkpoint, pacer); // Stream the file instead of loading it
+                    return;
+                }
+            } else {
+                waitForFocus(strategy);
+                job = engine.submit(Channels.newChannel(System.in)); // Stream piped input
+            }
+            job.get();
+        } finally {
+            if (channel != null) channel.close();
+        }
+    }
+
+    /**
+     * Types only the lines that changed since the last payload sent to the target, then remembers the new payload.
+     * The payload is forgotten while typing, so a run that stops part way is never diffed against.
+     */
+    private static void typeIncremental(KeystrokeStrategy strategy, String target, String filePath, String[] args) throws Exception {
+        String text = filePath != null ? Files.readString(Paths.get(filePath), StandardCharsets.UTF_8) : getInputText(args);
+        if (text == null) text = new String(System.in.readAllBytes(), StandardCharsets.UTF_8); // Piped input is diffed as a whole
+        IncrementalTyping incremental = IncrementalTyping.load(IncrementalTyping.DEFAULT_DIRECTORY, target);
+        KeystrokePlan plan = incremental.plan(strategy.compiler(), text);
+        if (strategy instanceof DryRunKeystroke) {
+            strategy.replay(plan); // Estimate the edit script, keeping the saved payload
+            System.out.println(incremental.report());
+            return;
+        }
+        if (plan.size() > 0) {
+            incremental.forget();
+            waitForFocus(strategy);
+            try (TypingEngine engine = TypingEngine.start(strategy)) {
+                engine.submit(plan).get();
+            }
+        }
+        incremental.save(text);
+        System.out.println(incremental.report());
+    }
+
+    /**
+     * Types a file while saving its checkpoint. When the job fails or is interrupted, Ctrl+C included, it is
+     * cancelled, the keys it held are released, and the exact progress is saved for --resume.
+     */
+    private static void typeCheckpointed(TypingEngine engine, TypingCheckpoint checkpoint, Pacer pacer) throws Exception {
+        TypingJob job = engine.submit(checkpoint.source());
+        // The pacer counts each character as it is sent, the job only whole chunks
+        LongSupplier typed = () -> Math.max(job.typedCharacters(), pacer.ticks());
+        checkpoint.startSaving(job::typedCharacters);
+        Thread interrupted = new Thread(() -> {
+            job.cancel(true);
+            engine.close(); // Waits until the dispatcher has released the held keys
+            saveCheckpoint(checkpoint, typed.getAsLong());
+        });
+        Runtime.getRuntime().addShutdownHook(interrupted);
+
+        try {
+            job.get();
+        } catch (Exception e) {
+            if (!removeShutdownHook(interrupted)) { // Shutting down, the hook saves the checkpoint
+                interrupted.join();
+                return;
+            }
+            job.cancel(true);
+            engine.close();
+            saveCheckpoint(checkpoint, typed.getAsLong());
+            throw e;
+        }
+        removeShutdownHook(interrupted);
+        checkpoint.complete();
+    }
+
+    private static boolean removeShutdownHook(Thread hook) {
+        try {
+            return Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            return false; // Already shutting down
+        }
+    }
+
+    private static void saveCheckpoint(TypingCheckpoint checkpoint, long typedCharacters) {
+        try {
+            checkpoint.stop(typedCharacters);
+            System.err.println("Stopped at character " + checkpoint.typedCharacter() + ". Run again with --resume to continue.");
+        } catch (IOException e) {
+            System.err.println("Cannot save checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compiles the input into a keystroke macro file for the selected backend and layout, without typing it.
+     * Timestamps are recorded when --delay or --rate is given. With --parallel, a file is compiled on every core.
+     */
+    private static void compileMacro(String outputPath, String[] args) throws IOException {
+        KeystrokeStrategyProvider provider = selectBackend(args);
+        KeyLayout layout = parseLayout(args);
+        KeystrokeCompiler compiler = provider.compiler(layout, getTarget(args));
+        String transform = getArgumentValue(args, ARG_TRANSFORM);
+        if (transform != null) compiler = TransformingKeystroke.compiler(compiler, TransformingKeystroke.Options.parse(transform));
+        long intervalNanos = hasArgument(args, ARG_DELAY) || hasArgument(args, ARG_RATE) ? parsePacer(args).intervalNanos() : -1;
+        String filePath = getFilePath(args);
+        boolean parallel = hasArgument(args, ARG_PARALLEL);
+        if (parallel && filePath == null) throw new IllegalArgumentException("--parallel needs a --file or --mmap to compile.");
+        String inputText = filePath == null ? getInputText(args) : null;
+
+        try (KeystrokeMacro.Writer writer = new KeystrokeMacro.Writer(
+                FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                provider.name(), layout.id(), compiler.keymap(), intervalNanos)) {
+            Consumer<KeystrokePlan> sink = plan -> {
+                try {
+                    writer.write(plan);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            if (inputText != null) {
+                StreamingInput.plan(compiler, inputText, sink);
+            } else if (filePath != null) {
+                try (FileChannel file = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                    if (parallel) {
+                        ParallelInput.plan(compiler, file, ForkJoinPool.commonPool(), ParallelInput.defaultWindow(ForkJoinPool.commonPool()), sink);
+                    } else {
+                        StreamingInput.plan(compiler, file, sink);
+                    }
+                }
+            } else {
+                StreamingInput.plan(compiler, Channels.newChannel(System.in), sink);
+            }
+            StreamingInput.end(compiler, sink);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.out.println("Compiled to " + outputPath);
+    }
+
+    /**
+     * Types a keystroke macro file straight from a memory mapping. The macro must have been compiled for the
+     * selected backend and layout, and against the same keymap, such as the same X server keyboard mapping.
+     */
+    private static void replayMacro(String macroPath, KeystrokeStrategy strategy, Pacer pacer, String[] args)
+            throws IOException, InterruptedException {
+        KeystrokeMacro macro;
+        try (FileChannel file = FileChannel.open(Paths.get(macroPath), StandardOpenOption.READ)) {
+            macro = KeystrokeMacro.map(file); // The mapping stays valid once the channel is closed
+        }
+        String backend = selectBackend(args).name();
+        String layout = parseLayout(args).id();
+        boolean estimate = strategy instanceof DryRunKeystroke; // Counts and timing do not depend on the backend
+        if (!estimate && (!macro.backend().equals(backend) || !macro.layout().equals(layout))) {
+            throw new IllegalArgumentException("The macro was compiled for --" + macro.backend() + " --layout " + macro.layout()
+                    + ", not --" + backend + " --layout " + layout + ".");
+        }
+        if (!estimate && !macro.keymap().equals(strategy.compiler().keymap())) {
+            throw new IllegalArgumentException("The macro was compiled against another keyboard mapping of the --" + backend
+                    + " target. Compile it again for this one.");
+        }
+        if (strategy instanceof DryRunKeystroke dryRun) {
+            KeystrokeStrategyProvider recorded = KeystrokeStrategies.find(macro.backend());
+            if (recorded == null) throw new IllegalArgumentException("The macro was compiled for an unknown backend --" + macro.backend() + ".");
+            dryRun.countModifiersOf(recorded.compiler(KeyLayout.forName(macro.layout()), getTarget(args))); // Opens an --xtest target's display
+        }
+        waitForFocus(strategy);
+        macro.replay(strategy, pacer);
+    }
+
+    private static KeystrokeStrategy parseArguments(String[] args, Pacer pacer) {
+        int pasteChunkSize = parsePasteChunkSize(args);
+        if (pasteChunkSize > 0 && getTarget(args) != null) {
+            throw new IllegalArgumentException("--paste uses the clipboard of the default display, so it cannot be combined with --target.");
+        }
+        KeystrokeStrategyProvider selected = selectBackend(args);
+        KeystrokeStrategy strategy = selected.create(pacer, parseLayout(args), getTarget(args)); // Only the selected backend is ever initialized
+        if (pacer instanceof AdaptivePacer adaptive) {
+            if (!strategy.hasFeedback()) {
+                System.err.println("The " + selected.name() + " backend gives no feedback. Typing at a fixed " + adaptive.rate() + " cps.");
+            } else {
+                adaptive.feedback(AdaptivePacer.Feedback.roundTrip(strategy::syncNanos));
+            }
+        }
+        if (pasteChunkSize > 0 && strategy instanceof DryRunKeystroke) {
+            throw new IllegalArgumentException("--dry-run models typed keys only, and cannot be combined with --paste.");
+        }
+        if (pasteChunkSize > 0) {
+            try {
+                strategy = new HybridKeystroke(strategy, pacer, pasteChunkSize, hasArgument(args, ARG_KEEP_CLIPBOARD));
+            } catch (RuntimeException e) {
+                closeBackend(strategy);
+                throw e;
+            }
+        }
+        String transform = getArgumentValue(args, ARG_TRANSFORM);
+        if (transform != null) return new TransformingKeystroke(strategy, TransformingKeystroke.Options.parse(transform));
+        return strategy;
+    }
+
+    private static KeystrokeStrategyProvider selectBackend(String[] args) {
+        KeystrokeStrategyProvider selected = null;
 
         for (String arg : args) {
-            if (ARG_ROBOT.equalsIgnoreCase(arg)) {
-                if (jnaSelected) throw new IllegalArgumentException(ERR_MSG_ROBOT_OR_JNA);
-                robotSelected = true;
+            KeystrokeStrategyProvider provider = backendProvider(arg);
+            if (provider != null) {
+                if (selected != null && selected != provider) throw new IllegalArgumentException(ERR_MSG_ROBOT_OR_JNA);
+                selected = provider;
             }
+        }
 
-            if (ARG_JNA.equalsIgnoreCase(arg)) {
-                if (robotSelected) throw new IllegalArgumentException(ERR_MSG_ROBOT_OR_JNA);
-                jnaSelected = true;
+        if (selected == null) throw new IllegalArgumentException("Specify one of --robot, --jna, --xtest, --uinput or --dry-run.");
+        return selected;
+    }
+
+    /**
+     * Returns the registered backend an argument selects, or {@code null} if it does not name one.
+     */
+    private static KeystrokeStrategyProvider backendProvider(String arg) {
+        return arg.startsWith("--") ? KeystrokeStrategies.find(arg.substring(2)) : null;
+    }
+
+    /**
+     * Serves jobs on the socket until the process is stopped. Each job's options override the daemon's own
+     * backend, pacing, layout, paste, target and transform options. Rates learned with --adaptive are saved when the
+     * daemon stops.
+     */
+    private static void runDaemon(String socketPath, String[] args) throws IOException {
+        if (hasArgument(args, ARG_STATS)) KeystrokeStats.enable();
+        Map<String, AdaptivePacer> adaptivePacers = new HashMap<>(); // Filled by the daemon's worker, read once it has stopped
+        TypingDaemon daemon = new TypingDaemon(Paths.get(socketPath), options -> {
+            String[] jobArgs = mergeJobArguments(options, args);
+            try {
+                Pacer pacer = parsePacer(jobArgs);
+                if (pacer instanceof AdaptivePacer adaptive) adaptivePacers.put(getAdaptiveProfile(jobArgs), adaptive);
+                return parseArguments(jobArgs, pacer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, options -> Objects.toString(getTarget(mergeJobArguments(options, args)), ""));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+                for (Map.Entry<String, AdaptivePacer> entry : adaptivePacers.entrySet()) {
+                    saveLearnedRate(entry.getKey(), entry.getValue());
+                }
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
             }
+            KeystrokeStats stats = KeystrokeStats.active();
+            if (stats != null) System.out.print(stats.summary());
+            if (stats != null && PlanCache.active() != null) System.out.println(PlanCache.active().summary());
+        }));
+        System.out.println("Listening on " + socketPath);
+        daemon.run();
+    }
+
+    /**
+     * Adds the daemon's backend, pacing, layout, paste, target and transform options to a job's options, unless the job sets its
+     * own.
+     */
+    private static String[] mergeJobArguments(String[] options, String[] defaults) {
+        List<String> merged = new ArrayList<>(List.of(options));
+        boolean backend = false;
+        for (String option : options) {
+            backend |= backendProvider(option) != null;
+        }
+        boolean pacing = hasArgument(options, ARG_DELAY) || hasArgument(options, ARG_RATE) || hasArgument(options, ARG_ADAPTIVE);
+        boolean layout = hasArgument(options, ARG_LAYOUT);
+        boolean paste = hasArgument(options, ARG_PASTE);
+        boolean target = hasArgument(options, ARG_TARGET);
+        boolean transform = hasArgument(options, ARG_TRANSFORM);
+        for (int i = 0; i < defaults.length; i++) {
+            String arg = defaults[i];
+            if (backendProvider(arg) != null) {
+                if (!backend) merged.add(arg);
+            } else if (i + 1 < defaults.length && (ARG_DELAY.equalsIgnoreCase(arg) || ARG_RATE.equalsIgnoreCase(arg) || ARG_ADAPTIVE.equalsIgnoreCase(arg))) {
+                if (!pacing) merged.addAll(List.of(arg, defaults[i + 1]));
+                i++;
+            } else if (i + 1 < defaults.length && ARG_LAYOUT.equalsIgnoreCase(arg)) {
+                if (!layout) merged.addAll(List.of(arg, defaults[i + 1]));
+                i++;
+            } else if (i + 1 < defaults.length && ARG_PASTE.equalsIgnoreCase(arg)) {
+                if (!paste) merged.addAll(List.of(arg, defaults[i + 1]));
+                i++;
+            } else if (ARG_KEEP_CLIPBOARD.equalsIgnoreCase(arg)) {
+                if (!paste) merged.add(arg);
+            } else if (i + 1 < defaults.length && ARG_TARGET.equalsIgnoreCase(arg)) {
+                if (!target) merged.addAll(List.of(arg, defaults[i + 1]));
+                i++;
+            } else if (i + 1 < defaults.length && ARG_TRANSFORM.equalsIgnoreCase(arg)) {
+                if (!transform) merged.addAll(List.of(arg, defaults[i + 1]));
+                i++;
+            }
+        }
+        return merged.toArray(new String[0]);
+    }
+
+    private static void waitForFocus(KeystrokeStrategy strategy) throws InterruptedException {
+        if (strategy instanceof DryRunKeystroke) return; // Nothing receives the keys
+        System.out.println("Waiting 5 seconds to focus on the target window...");
+        Thread.sleep(5000); // Give time to focus on the target window
+    }
+
+    private static String getFilePath(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_FILE.equalsIgnoreCase(args[i]) || ARG_MMAP.equalsIgnoreCase(args[i])) return args[i + 1];
+        }
+        return null;
+    }
+
+    private static String getArgumentValue(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (name.equalsIgnoreCase(args[i])) return args[i + 1];
+        }
+        return null;
+    }
+
+    private static String getTarget(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_TARGET.equalsIgnoreCase(args[i])) return args[i + 1];
         }
+        return null;
+    }
 
-        if (robotSelected) return new RobotKeystroke(delay);
-        if (jnaSelected) return new JNAKeystroke(delay);
-        throw new IllegalArgumentException("Specify either --robot or --jna.");
+    private static String getDaemonSocket(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_DAEMON.equalsIgnoreCase(args[i])) return args[i + 1];
+        }
+        return null;
     }
 
+    private static boolean hasArgument(String[] args, String name) {
+        for (String arg : args) {
+            if (name.equalsIgnoreCase(arg)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the text given on the command line or typed interactively, or {@code null} when input should be
+     * streamed from a file or from piped standard input.
+     */
     private static String getInputText(String[] args) throws IOException {
         StringBuilder inputText = new StringBuilder();
 
         for (int i = 0; i < args.length; i++) {
-            if (ARG_ROBOT.equalsIgnoreCase(args[i]) || ARG_JNA.equalsIgnoreCase(args[i])) {
+            if (backendProvider(args[i]) != null || ARG_STATS.equalsIgnoreCase(args[i]) || ARG_KEEP_CLIPBOARD.equalsIgnoreCase(args[i])
+                    || ARG_RESUME.equalsIgnoreCase(args[i]) || ARG_PARALLEL.equalsIgnoreCase(args[i])) {
                 continue; // Skip mode arguments
             }
 
-            if ("--file".equalsIgnoreCase(args[i]) && i + 1 < args.length) {
-                return readFile(args[i + 1]); // Read from file if --file option is present
-            }
-
-            if ("--delay".equalsIgnoreCase(args[i])) {
-                i++; // Skip the delay value
+            if (ARG_DELAY.equalsIgnoreCase(args[i]) || ARG_RATE.equalsIgnoreCase(args[i]) || ARG_LAYOUT.equalsIgnoreCase(args[i])
+                    || ARG_ADAPTIVE.equalsIgnoreCase(args[i]) || ARG_PASTE.equalsIgnoreCase(args[i]) || ARG_CACHE.equalsIgnoreCase(args[i])
+                    || ARG_TARGET.equalsIgnoreCase(args[i]) || ARG_COMPILE_TO.equalsIgnoreCase(args[i]) || ARG_REPLAY.equalsIgnoreCase(args[i])
+                    || ARG_TRANSFORM.equalsIgnoreCase(args[i]) || ARG_INCREMENTAL.equalsIgnoreCase(args[i])) {
+                i++; // Skip the option value
                 continue;
             }
 
@@ -74,20 +495,102 @@ public class TextToKeyStrokeMain {
             return inputText.toString().trim(); // Return concatenated input text
         }
 
+        if (System.console() == null) {
+            return null; // Piped input is streamed while it is typed
+        }
+
         // Fallback to reading from standard input if no text argument is provided
         System.out.println("Enter text to type (end with Ctrl+D):");
-        return new String(System.in.readAllBytes());
+        return new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
     }
 
+    private static KeyLayout parseLayout(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_LAYOUT.equalsIgnoreCase(args[i])) return KeyLayout.forName(args[i + 1]);
+        }
+        return KeyLayout.US;
+    }
+
+    /**
+     * Builds the pacer from --adaptive, then --rate, then --delay, in order of precedence. An adaptive pacer starts at
+     * the rate learned for its profile, or at --rate if nothing has been learned yet.
+     */
+    private static Pacer parsePacer(String[] args) throws IOException {
+        String profile = getAdaptiveProfile(args);
+        if (profile != null) {
+            double startRate = AdaptivePacer.DEFAULT_START_RATE;
+            for (int i = 0; i < args.length - 1; i++) {
+                if (ARG_RATE.equalsIgnoreCase(args[i])) {
+                    try {
+                        startRate = Double.parseDouble(args[i + 1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid rate value. Starting at the default rate of " + AdaptivePacer.DEFAULT_START_RATE + " cps.");
+                    }
+                }
+            }
+            return new AdaptivePacer(RateProfiles.load(RateProfiles.DEFAULT_FILE).rate(profile, startRate));
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_RATE.equalsIgnoreCase(args[i])) {
+                try {
+                    return Pacer.ofRate(Double.parseDouble(args[i + 1]));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Invalid rate value. Using the delay instead.");
+                }
+            }
+        }
+        return Pacer.ofDelayMillis(parseDelay(args));
+    }
+
+    /**
+     * @return The plan cache size given with --cache, in megabytes, or 0 when caching is off.
+     */
+    private static long parseCacheMegabytes(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_CACHE.equalsIgnoreCase(args[i])) {
+                try {
+                    return Long.parseLong(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid cache size. Caching is off.");
+                }
+            }
+        }
+        return 0;
+    }
 
-    private static String readFile(String filePath) throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(filePath));
-        return String.join("\n", lines);
+    /**
+     * @return The paste chunk size given with --paste, or 0 when pasting is off.
+     */
+    private static int parsePasteChunkSize(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_PASTE.equalsIgnoreCase(args[i])) {
+                try {
+                    return Integer.parseInt(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid paste chunk size. Using the default of " + HybridKeystroke.DEFAULT_CHUNK_SIZE + " characters.");
+                    return HybridKeystroke.DEFAULT_CHUNK_SIZE;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static String getAdaptiveProfile(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (ARG_ADAPTIVE.equalsIgnoreCase(args[i])) return args[i + 1];
+        }
+        return null;
+    }
+
+    private static void saveLearnedRate(String profile, AdaptivePacer pacer) throws IOException {
+        RateProfiles profiles = RateProfiles.load(RateProfiles.DEFAULT_FILE);
+        profiles.put(profile, pacer.learnedRate());
+        profiles.save();
     }
 
     private static int parseDelay(String[] args) {
         for (int i = 0; i < args.length; i++) {
-            if ("--delay".equalsIgnoreCase(args[i]) && i + 1 < args.length) {
+            if (ARG_DELAY.equalsIgnoreCase(args[i]) && i + 1 < args.length) {
                 try {
                     return Integer.parseInt(args[i + 1]);
                 } catch (NumberFormatException e) {
@@ -99,13 +602,33 @@ public class TextToKeyStrokeMain {
     }
 
     private static void printUsage() {
-        System.out.println("Usage: java com.example.TextToKeyStrokeMain --robot|--jna [--file <filePath>] [--delay <milliseconds>] [text]");
+        System.out.println("Usage: java com.example.TextToKeyStrokeMain --robot|--jna|--xtest|--uinput|--dry-run [--file <filePath> [--resume] | --mmap <filePath> [--parallel]] [--delay <milliseconds> | --rate <cps> | --adaptive <profile>] [--layout <id>] [--target <display>] [--paste <chunkSize> [--keep-clipboard]] [--transform <options>] [--incremental <name>] [--cache <megabytes>] [--stats] [text]");
+        System.out.println("       java com.example.TextToKeyStrokeMain --robot|--jna|--xtest|--uinput|--dry-run [--layout <id>] [--delay <milliseconds> | --rate <cps>] [--transform <options>] --compile-to <out.ksm> [--file <filePath> [--parallel]] [text]");
+        System.out.println("       java com.example.TextToKeyStrokeMain --robot|--jna|--xtest|--uinput|--dry-run [--layout <id>] [--delay <milliseconds> | --rate <cps>] --replay <in.ksm>");
+        System.out.println("       java com.example.TextToKeyStrokeMain --daemon <socketPath> --robot|--jna|--xtest|--uinput|--dry-run [--delay <milliseconds> | --rate <cps> | --adaptive <profile>] [--layout <id>] [--target <display>] [--transform <options>] [--cache <megabytes>] [--stats]");
         System.out.println("Options:");
-        System.out.println("  --robot          Use Robot-based keystroke simulation.");
-        System.out.println("  --jna            Use JNA-based keystroke simulation.");
+        for (KeystrokeStrategyProvider provider : KeystrokeStrategies.providers()) {
+            System.out.printf("  %-16s %s%n", "--" + provider.name(), provider.description());
+        }
         System.out.println("  --file <path>    Path to a text file with input text (optional).");
+        System.out.println("  --mmap <path>    Like --file, but memory-maps the file. Suited to very large files.");
+        System.out.println("  --parallel       Compile the --mmap file, or the file for --compile-to, on every core ahead of typing.");
         System.out.println("  --delay <ms>     Delay between keystrokes in milliseconds (optional, default is 50ms).");
+        System.out.println("  --rate <cps>     Typing rate in characters per second (optional, overrides --delay).");
+        System.out.println("  --adaptive <profile> Find the fastest rate the target keeps up with, and remember it for the profile.");
+        System.out.println("  --layout <id>    Keyboard layout of the target for --robot and --uinput: us, uk, de or fr (optional, default is us). --xtest and --jna do not need it.");
+        System.out.println("  --target <name>  Display or screen to type into: an X display such as :1 for --xtest, a screen index for --robot, a device or named pipe for --uinput (optional).");
+        System.out.println("  --paste <chars>  Paste runs of plain text through the clipboard, at most this many characters at once (optional).");
+        System.out.println("  --keep-clipboard Restore the clipboard's contents after pasting (optional, with --paste).");
+        System.out.println("  --transform <options> Trim keystrokes an editor makes redundant: vscode, intellij, vim or plain, or strip-indent, crlf, expand-tabs=N, collapse-tabs=N, auto-close.");
+        System.out.println("  --incremental <name> Type only the lines changed since the last text sent to this named target.");
+        System.out.println("  --resume         Continue an interrupted --file run from its checkpoint instead of the beginning.");
+        System.out.println("  --compile-to <f> Compile the input into a keystroke macro file instead of typing it.");
+        System.out.println("  --replay <file>  Type a keystroke macro file compiled for the same backend and layout.");
+        System.out.println("  --cache <MB>     Cache compiled text, so repeated text is typed without mapping it again (optional).");
+        System.out.println("  --stats          Print event counts and per-phase latency percentiles at the end (optional).");
+        System.out.println("  --daemon <path>  Stay resident and type jobs received on this Unix domain socket, in order.");
         System.out.println("  text             Text to type directly, if no --file is specified.");
-        System.out.println("Note: --robot and --jna are mutually exclusive. Please specify one.");
+        System.out.println("Note: --robot, --jna, --xtest, --uinput and --dry-run are mutually exclusive. Please specify one.");
     }
 }
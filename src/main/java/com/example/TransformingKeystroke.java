@@ -0,0 +1,413 @@
+package com.example;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Rewrites text on its way to another backend so that editors which indent and close brackets by themselves get
+ * only the keystrokes they still need.
+ * <p>
+ * The transform runs while each chunk is compiled, so it streams like the rest of the pipeline and keeps its state,
+ * such as whether a line has started, across chunks. It can:
+ * <ul>
+ *     <li>strip leading whitespace, for editors that auto-indent;</li>
+ *     <li>turn CRLF and lone CR line breaks into a single Enter;</li>
+ *     <li>expand tabs into spaces, or collapse leading runs of spaces into tabs;</li>
+ *     <li>skip closing brackets the editor inserted itself. Closers typed right after the editor's are typed over,
+ *     as editors allow; for a block the editor moved onto its own line when Enter was typed between the brackets,
+ *     the closing line is replaced by Down and End instead of typing a second closer.</li>
+ * </ul>
+ * Editor presets combine these options. Plans of a transforming compiler are never cached, since they depend on the
+ * text typed before.
+ */
+public class TransformingKeystroke implements KeystrokeStrategy, AutoCloseable {
+
+    private final KeystrokeStrategy target;
+    private final TransformCompiler compiler;
+
+    /**
+     * @param target  The backend typing the transformed text.
+     * @param options The transform options.
+     */
+    public TransformingKeystroke(KeystrokeStrategy target, Options options) {
+        this.target = target;
+        this.compiler = new TransformCompiler(target.compiler(), options);
+    }
+
+    /**
+     * Returns a compiler applying the transform in front of another one, for compiling without typing.
+     */
+    static KeystrokeCompiler compiler(KeystrokeCompiler keys, Options options) {
+        return new TransformCompiler(keys, options);
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
+    @Override
+    public void replay(KeystrokePlan plan) {
+        target.replay(plan);
+    }
+
+    @Override
+    public void startJob() {
+        target.startJob();
+    }
+
+    @Override
+    public void endJob() {
+        target.endJob();
+    }
+
+    @Override
+    public boolean hasFeedback() {
+        return target.hasFeedback();
+    }
+
+    @Override
+    public long syncNanos() {
+        return target.syncNanos();
+    }
+
+    @Override
+    public void dispatchEvent(int event) {
+        target.dispatchEvent(event);
+    }
+
+    @Override
+    public void dispatch(KeyEventBatch events) {
+        target.dispatch(events);
+    }
+
+    /**
+     * @return One line with the characters removed and added, and the key events saved.
+     */
+    public String report() {
+        return compiler.report();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!(target instanceof AutoCloseable closeable)) return;
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error closing the backend", e);
+        }
+    }
+
+    /**
+     * Which rewrites to apply, parsed from a comma-separated list of options and presets such as
+     * {@code vscode,expand-tabs=4}.
+     * <ul>
+     *     <li>{@code strip-indent}: drop spaces and tabs at the start of lines;</li>
+     *     <li>{@code crlf}: type CRLF and CR line breaks as one Enter;</li>
+     *     <li>{@code expand-tabs=N}: type tabs as spaces up to the next multiple of N columns;</li>
+     *     <li>{@code collapse-tabs=N}: type each N spaces of leading indentation as one tab;</li>
+     *     <li>{@code auto-close}: skip the brackets and quotes the editor closes itself;</li>
+     *     <li>presets {@code vscode} and {@code intellij} (all of strip-indent, crlf and auto-close), {@code vim}
+     *     (strip-indent and crlf, for autoindent) and {@code plain} (crlf only).</li>
+     * </ul>
+     */
+    public static final class Options {
+
+        private boolean stripIndent;
+        private boolean crlf;
+        private int expandTabs;
+        private int collapseTabs;
+        private boolean autoClose;
+
+        /**
+         * @param spec The comma-separated options and presets.
+         * @return The options.
+         * @throws IllegalArgumentException If an option is unknown or the options conflict.
+         */
+        public static Options parse(String spec) {
+            Options options = new Options();
+            for (String token : spec.toLowerCase(Locale.ROOT).split(",")) {
+                String option = token.strip();
+                int equals = option.indexOf('=');
+                String name = equals < 0 ? option : option.substring(0, equals);
+                switch (name) {
+                    case "vscode", "intellij" -> {
+                        options.stripIndent = true;
+                        options.crlf = true;
+                        options.autoClose = true;
+                    }
+                    case "vim" -> {
+                        options.stripIndent = true;
+                        options.crlf = true;
+                    }
+                    case "plain", "crlf" -> options.crlf = true;
+                    case "strip-indent" -> options.stripIndent = true;
+                    case "auto-close" -> options.autoClose = true;
+                    case "expand-tabs" -> options.expandTabs = tabWidth(option, equals);
+                    case "collapse-tabs" -> options.collapseTabs = tabWidth(option, equals);
+                    default -> throw new IllegalArgumentException("Unknown transform option: " + option);
+                }
+            }
+            if (options.expandTabs > 0 && options.collapseTabs > 0) {
+                throw new IllegalArgumentException("Specify only one of expand-tabs and collapse-tabs.");
+            }
+            return options;
+        }
+
+        private static int tabWidth(String option, int equals) {
+            try {
+                int width = equals < 0 ? -1 : Integer.parseInt(option.substring(equals + 1));
+                if (width > 0) return width;
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Tab width must be a positive number: " + option);
+        }
+    }
+
+    /**
+     * An auto-closed bracket or quote waiting for its closer in the text.
+     */
+    private static final class Closer {
+        final char character;
+        boolean onOwnLine; // Enter was typed between the brackets, so the editor moved the closer onto a new line
+
+        Closer(char character) {
+            this.character = character;
+        }
+    }
+
+    /**
+     * Transforms each range of text, then compiles the result with the target's compiler.
+     */
+    static final class TransformCompiler extends KeystrokeCompiler {
+
+        static final String OPENERS = "([{\"'";
+        static final String CLOSERS = ")]}\"'";
+        /**
+         * Most unclosed brackets tracked; the oldest are forgotten beyond that, as with unbalanced prose.
+         */
+        static final int MAX_OPEN = 256;
+        /**
+         * Returned by {@link #closingLine} when the text ends before the line does, so the line break is held back
+         * until the next chunk or the end of the input decides it.
+         */
+        private static final int UNDECIDED = -2;
+
+        private final KeystrokeCompiler keys;
+        private final Options options;
+        private final boolean autoClose;
+        private final StringBuilder out = new StringBuilder();
+        private final ArrayDeque<Closer> open = new ArrayDeque<>();
+        private final StringBuilder held = new StringBuilder();
+        private boolean ending;
+        private boolean atLineStart = true;
+        private boolean afterCarriageReturn;
+        private int column;
+        private int pendingSpaces;
+        private char previous;
+        private long removed;
+        private long added;
+        private long navigationKeys;
+
+        TransformCompiler(KeystrokeCompiler keys, Options options) {
+            super(keys.layout());
+            this.keys = keys;
+            this.options = options;
+            // Without Down and End a block's closing line cannot be skipped, so closers are typed as they are
+            this.autoClose = options.autoClose && keys.keyCodeFor(KeyEvent.VK_DOWN) >= 0 && keys.keyCodeFor(KeyEvent.VK_END) >= 0;
+        }
+
+        @Override
+        public void compile(CharSequence text, int start, int end, KeystrokePlan.Builder builder) {
+            if (held.length() > 0) { // A line break from the previous chunk, and the indentation after it
+                held.append(text, start, end);
+                text = held.toString();
+                start = 0;
+                end = text.length();
+                held.setLength(0);
+            }
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (options.crlf) {
+                    if (c == '\n' && afterCarriageReturn) {
+                        afterCarriageReturn = false;
+                        removed++;
+                        continue;
+                    }
+                    afterCarriageReturn = c == '\r';
+                    if (c == '\r') c = '\n';
+                }
+
+                if (c == '\n') {
+                    int closing = autoClose ? closingLine(text, i, end) : -1;
+                    if (closing == UNDECIDED) {
+                        held.append(text, i, end);
+                        break;
+                    }
+                    flushSpaces();
+                    if (closing >= 0) {
+                        skipClosingLine(builder);
+                        removed += closing + 1 - i;
+                        i = closing;
+                        continue;
+                    }
+                    Closer innermost = open.peek();
+                    if (autoClose && innermost != null && OPENERS.indexOf(previous) == CLOSERS.indexOf(innermost.character)
+                            && previous != innermost.character) {
+                        innermost.onOwnLine = true;
+                    }
+                    emit(c);
+                } else if (atLineStart && options.stripIndent && (c == ' ' || c == '\t')) {
+                    removed++;
+                } else if (atLineStart && options.collapseTabs > 0 && c == ' ') {
+                    if (++pendingSpaces == options.collapseTabs) {
+                        pendingSpaces = 0;
+                        removed += options.collapseTabs;
+                        added++;
+                        emit('\t');
+                    }
+                } else if (c == '\t' && options.expandTabs > 0) {
+                    flushSpaces();
+                    int spaces = options.expandTabs - column % options.expandTabs;
+                    removed++;
+                    added += spaces;
+                    for (int s = 0; s < spaces; s++) emit(' ');
+                } else {
+                    flushSpaces();
+                    if (autoClose) track(c);
+                    emit(c);
+                }
+            }
+            flush(builder); // Leading spaces not yet making a tab wait for the next chunk
+        }
+
+        /**
+         * Compiles the line break and spaces still held back, now that no text follows them.
+         */
+        @Override
+        public void end(KeystrokePlan.Builder builder) {
+            if (held.length() > 0) {
+                String rest = held.toString();
+                held.setLength(0);
+                ending = true;
+                compile(rest, 0, rest.length(), builder);
+                ending = false;
+            }
+            flushSpaces();
+            flush(builder);
+            keys.end(builder);
+        }
+
+        @Override
+        public void reset() {
+            keys.reset();
+            out.setLength(0);
+            open.clear();
+            held.setLength(0);
+            atLineStart = true;
+            afterCarriageReturn = false;
+            column = 0;
+            pendingSpaces = 0;
+            previous = 0;
+            removed = 0;
+            added = 0;
+            navigationKeys = 0;
+        }
+
+        /**
+         * When the innermost bracket was moved onto its own line and the text at {@code newline} continues with
+         * only indentation and that closer, returns the index of the closer, otherwise -1. Returns
+         * {@link #UNDECIDED} when the text ends first, unless it is the end of the input.
+         */
+        private int closingLine(CharSequence text, int newline, int end) {
+            Closer innermost = open.peek();
+            if (innermost == null || !innermost.onOwnLine) return -1;
+            int j = newline + 1;
+            if (afterCarriageReturn && j < end && text.charAt(j) == '\n') j++;
+            while (j < end && (text.charAt(j) == ' ' || text.charAt(j) == '\t')) j++;
+            if (j == end) return ending ? -1 : UNDECIDED;
+            return text.charAt(j) == innermost.character ? j : -1;
+        }
+
+        /**
+         * Moves past the closer the editor put on the line below, instead of typing the line break and the closer.
+         */
+        private void skipClosingLine(KeystrokePlan.Builder builder) {
+            Closer closer = open.pop();
+            flush(builder);
+            keys.compileKey(KeyEvent.VK_DOWN, builder);
+            keys.compileKey(KeyEvent.VK_END, builder);
+            navigationKeys += 2;
+            afterCarriageReturn = false;
+            atLineStart = false;
+            previous = closer.character;
+        }
+
+        /**
+         * Follows the brackets and quotes the editor closes: a closer matching the innermost one is typed over,
+         * an opener is closed unless it is inside a string, or a quote follows a word character.
+         */
+        private void track(char c) {
+            Closer innermost = open.peek();
+            if (innermost != null && innermost.character == c) {
+                open.pop();
+                return;
+            }
+            if (innermost != null && (innermost.character == '"' || innermost.character == '\'')) return;
+            int index = OPENERS.indexOf(c);
+            if (index < 0 || (c == '"' || c == '\'') && (Character.isLetterOrDigit(previous) || previous == '_')) return;
+            if (open.size() == MAX_OPEN) open.removeLast();
+            open.push(new Closer(CLOSERS.charAt(index)));
+        }
+
+        private void emit(char c) {
+            out.append(c);
+            previous = c;
+            column = c == '\n' ? 0 : column + 1;
+            atLineStart = c == '\n' || atLineStart && (c == ' ' || c == '\t');
+        }
+
+        private void flushSpaces() {
+            for (; pendingSpaces > 0; pendingSpaces--) emit(' ');
+        }
+
+        private void flush(KeystrokePlan.Builder builder) {
+            if (out.length() == 0) return;
+            keys.compile(out, 0, out.length(), builder);
+            out.setLength(0);
+        }
+
+        @Override
+        public void finish(KeystrokePlan.Builder builder) {
+            keys.finish(builder);
+        }
+
+        @Override
+        protected int keyCodeFor(int awtKeyCode) {
+            return keys.keyCodeFor(awtKeyCode);
+        }
+
+        @Override
+        public String keymap() {
+            return keys.keymap();
+        }
+
+        @Override
+        public boolean isStateless() {
+            return false;
+        }
+
+        /**
+         * Each character is counted as a press and a release; modifiers are not counted.
+         */
+        String report() {
+            return String.format("Transform: %d characters removed, %d characters and %d navigation keys added, about %d key events saved",
+                    removed, added, navigationKeys, 2 * (removed - added - navigationKeys));
+        }
+    }
+}
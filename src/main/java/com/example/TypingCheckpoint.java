@@ -0,0 +1,329 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Progress of a file being typed, kept in a sidecar file ({@code <file>.checkpoint}) so an interrupted run can
+ * resume where it stopped instead of starting over.
+ * <p>
+ * The checkpoint holds the byte and character offset up to which the file has been typed, and a hash of the bytes
+ * just before that offset. Resuming checks the hash, so a file edited since is not resumed at a wrong position, then
+ * positions the channel at the byte offset: the prefix is neither read nor decoded again. The file is planned in
+ * chunks of {@link #CHUNK_SIZE} characters, so a save made while typing loses little; a save made once typing has
+ * stopped is exact to the character whenever every character of the chunk produced a key.
+ */
+public final class TypingCheckpoint {
+
+    /**
+     * Number of characters decoded and typed per chunk, smaller than {@link StreamingInput#CHUNK_SIZE} so periodic
+     * saves stay close to the typing position.
+     */
+    static final int CHUNK_SIZE = 1024;
+    /**
+     * Number of bytes before the offset covered by the hash.
+     */
+    static final int HASH_WINDOW = 4096;
+    static final long SAVE_INTERVAL_MILLIS = 1000;
+
+    private static final String KEY_BYTES = "bytes";
+    private static final String KEY_CHARACTERS = "characters";
+    private static final String KEY_HASH = "hash";
+
+    /**
+     * A planned chunk: where it starts in the file, and its text for resolving a position inside it.
+     *
+     * @param afterCarriageReturn True if the text before the chunk ends with a carriage return.
+     */
+    private record Segment(long typedStart, int characterCount, long startByte, long endByte, long startChar, String text,
+                           boolean afterCarriageReturn) {
+    }
+
+    private final Path path;
+    private final Path sidecar;
+    private final FileChannel file;
+    private final long startByte;
+    private final long startChar;
+    private final ConcurrentLinkedQueue<Segment> segments = new ConcurrentLinkedQueue<>();
+    private long typedByte; // Guarded by this
+    private long typedChar;
+    private ScheduledExecutorService saver;
+
+    private TypingCheckpoint(Path path, FileChannel file, long startByte, long startChar) {
+        this.path = path;
+        this.sidecar = sidecarFor(path);
+        this.file = file;
+        this.startByte = startByte;
+        this.startChar = startChar;
+        this.typedByte = startByte;
+        this.typedChar = startChar;
+    }
+
+    /**
+     * @param path The file being typed.
+     * @return Where the checkpoint of the file is kept.
+     */
+    public static Path sidecarFor(Path path) {
+        return Paths.get(path + ".checkpoint");
+    }
+
+    /**
+     * Starts tracking the progress of a file.
+     *
+     * @param path   The file being typed.
+     * @param file   The open file.
+     * @param resume True to start at the saved checkpoint, false to start from the beginning.
+     * @return The checkpoint.
+     * @throws IOException If the checkpoint cannot be read, or no longer matches the file.
+     */
+    public static TypingCheckpoint open(Path path, FileChannel file, boolean resume) throws IOException {
+        Path sidecar = sidecarFor(path);
+        if (!resume) return new TypingCheckpoint(path, file, 0, 0);
+        if (!Files.exists(sidecar)) throw new IOException("No checkpoint to resume from at " + sidecar);
+
+        Properties saved = new Properties();
+        try (Reader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            saved.load(reader);
+        }
+        long bytes;
+        long characters;
+        long hash;
+        try {
+            bytes = Long.parseLong(saved.getProperty(KEY_BYTES));
+            characters = Long.parseLong(saved.getProperty(KEY_CHARACTERS));
+            hash = Long.parseUnsignedLong(saved.getProperty(KEY_HASH), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint " + sidecar, e);
+        }
+        if (bytes > file.size() || hash(file, bytes) != hash) {
+            throw new IOException(path + " has changed since its checkpoint was saved");
+        }
+        return new TypingCheckpoint(path, file, bytes, characters);
+    }
+
+    public long startByte() {
+        return startByte;
+    }
+
+    public long startCharacter() {
+        return startChar;
+    }
+
+    /**
+     * Returns the job input: the file from the checkpoint on, decoded as UTF-8 and compiled one chunk at a time.
+     */
+    public TypingEngine.Source source() {
+        return (compiler, sink) -> {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(StreamingInput.CHUNK_SIZE);
+            CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+            KeystrokePlan.Builder builder = new KeystrokePlan.Builder(CHUNK_SIZE * 2);
+            builder.afterCarriageReturn(startByte > 0 && byteAt(startByte - 1) == '\r'); // Its line feed was typed with it
+            boolean[] afterCarriageReturn = {builder.afterCarriageReturn()};
+            long[] position = {startByte, startChar, 0, 0}; // Byte and character planned so far, characters compiled, read start
+            Consumer<KeystrokePlan> tracked = plan -> {
+                String text = chars.toString();
+                long endByte = position[3] + bytes.position();
+                segments.add(new Segment(position[2], plan.characterCount(), position[0], endByte, position[1], text, afterCarriageReturn[0]));
+                afterCarriageReturn[0] = builder.afterCarriageReturn();
+                position[0] = endByte;
+                position[1] += text.length();
+                position[2] += plan.characterCount();
+                sink.accept(plan);
+            };
+
+            file.position(startByte); // Seek past the typed prefix without reading it
+            boolean endOfInput = false;
+            while (!endOfInput && !Thread.currentThread().isInterrupted()) {
+                endOfInput = file.read(bytes) == -1;
+                bytes.flip();
+                position[3] = file.position() - bytes.remaining();
+                StreamingInput.decode(decoder, bytes, chars, endOfInput, compiler, builder, tracked);
+                bytes.compact(); // Keep any incomplete multi-byte sequence for the next read
+            }
+            if (endOfInput) {
+                decoder.flush(chars);
+                chars.flip();
+                position[3] = file.position() - bytes.position();
+                StreamingInput.typeChunk(compiler, chars, builder, tracked);
+            }
+        };
+    }
+
+    /**
+     * Saves the progress every {@link #SAVE_INTERVAL_MILLIS} until {@link #stop(long)} or {@link #complete()}.
+     *
+     * @param typedCharacters Returns the number of plan characters typed so far.
+     */
+    public void startSaving(LongSupplier typedCharacters) {
+        saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(() -> {
+            try {
+                save(typedCharacters.getAsLong());
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Cannot save checkpoint: " + e.getMessage());
+            }
+        }, SAVE_INTERVAL_MILLIS, SAVE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops saving periodically and saves the final progress.
+     *
+     * @param typedCharacters The number of plan characters typed, counted from the start of this run.
+     */
+    public void stop(long typedCharacters) throws IOException {
+        if (saver != null) saver.shutdownNow();
+        save(typedCharacters);
+    }
+
+    /**
+     * Stops saving and removes the checkpoint, once the whole file has been typed.
+     */
+    public void complete() throws IOException {
+        if (saver != null) saver.shutdownNow();
+        Files.deleteIfExists(sidecar);
+    }
+
+    /**
+     * @return The character offset in the file up to which typing is saved.
+     */
+    public synchronized long typedCharacter() {
+        return typedChar;
+    }
+
+    /**
+     * Moves the saved position to the given progress and writes the sidecar file, replacing it atomically.
+     *
+     * @param typedCharacters The number of plan characters typed, counted from the start of this run.
+     */
+    synchronized void save(long typedCharacters) throws IOException {
+        Segment segment;
+        while ((segment = segments.peek()) != null && segment.typedStart() + segment.characterCount() <= typedCharacters) {
+            segments.poll();
+            typedByte = segment.endByte();
+            typedChar = segment.startChar() + segment.text().length();
+        }
+        if (segment != null && typedCharacters >= segment.typedStart()) { // Even at its start, to skip a line feed typed already
+            int index = typedIndex(segment, (int) (typedCharacters - segment.typedStart()));
+            if (segment.startChar() + index > typedChar) { // A late periodic save must not move it back
+                typedByte = segment.startByte() + utf8Length(segment.text(), index);
+                typedChar = segment.startChar() + index;
+            }
+        }
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(KEY_BYTES, Long.toString(typedByte));
+        checkpoint.setProperty(KEY_CHARACTERS, Long.toString(typedChar));
+        try (FileChannel hashed = FileChannel.open(path)) { // The typing channel may be closed or interrupted by now
+            checkpoint.setProperty(KEY_HASH, Long.toHexString(hash(hashed, typedByte)));
+        }
+        Path temporary = Paths.get(sidecar + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            checkpoint.store(writer, "Typing progress, resume with --resume");
+        }
+        Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Resolves the first {@code typed} plan characters of a partly typed chunk to a position in its text. Plans count
+     * code points, or UTF-16 units for Unicode backends, and never the line feed of a CRLF, which is typed with its
+     * carriage return; when neither matches, because characters were skipped or pasted, or when malformed input was
+     * replaced, the chunk is typed again from its start.
+     */
+    private static int typedIndex(Segment segment, int typed) {
+        String text = segment.text();
+        if (utf8Length(text, text.length()) != segment.endByte() - segment.startByte()) return 0;
+        int lineFeeds = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCrlfLineFeed(segment, i)) lineFeeds++;
+        }
+        boolean codePoints = segment.characterCount() == text.codePointCount(0, text.length()) - lineFeeds;
+        if (!codePoints && segment.characterCount() != text.length() - lineFeeds) return 0;
+        int index = 0;
+        for (int counted = 0; counted < typed && index < text.length(); index++) {
+            char c = text.charAt(index);
+            if (isCrlfLineFeed(segment, index)) continue;
+            if (codePoints && Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1))) {
+                index++;
+            } else if (!codePoints && Character.isHighSurrogate(c) && counted + 1 == typed) {
+                break; // Only half of the pair was typed, type it again
+            }
+            counted++;
+        }
+        if (index < text.length() && isCrlfLineFeed(segment, index)) index++; // Typed with the carriage return
+        return index;
+    }
+
+    private static boolean isCrlfLineFeed(Segment segment, int index) {
+        if (segment.text().charAt(index) != '\n') return false;
+        return index > 0 ? segment.text().charAt(index - 1) == '\r' : segment.afterCarriageReturn();
+    }
+
+    /**
+     * Reads one byte of the file without moving the channel.
+     */
+    private byte byteAt(long offset) throws IOException {
+        ByteBuffer single = ByteBuffer.allocate(1);
+        if (file.read(single, offset) != 1) throw new IOException("File is shorter than its checkpoint");
+        return single.get(0);
+    }
+
+    private static long utf8Length(String text, int end) {
+        long length = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 64-bit FNV-1a over the {@link #HASH_WINDOW} bytes before the offset, read without moving the channel.
+     */
+    static long hash(FileChannel file, long offset) throws IOException {
+        long start = Math.max(0, offset - HASH_WINDOW);
+        ByteBuffer window = ByteBuffer.allocate((int) (offset - start));
+        while (window.hasRemaining()) {
+            if (file.read(window, start + window.position()) == -1) throw new IOException("File is shorter than its checkpoint");
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : window.array()) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
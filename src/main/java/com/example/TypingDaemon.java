@@ -0,0 +1,419 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Resident typing service listening on a Unix domain socket, so repeated jobs skip JVM startup, backend
+ * initialization and JIT warm-up.
+ * <p>
+ * Each connection is one job. The client sends a single line of options, in the same form as the command line (an
+ * empty line keeps the daemon's defaults), then the text to type, then shuts down its output. The text is streamed
+ * while it is typed. The daemon answers with {@code OK <characters typed>} or {@code ERROR <message>} on one line.
+ * <p>
+ * Option lines are read by the accepting thread, for every connection at once, and a job is only queued once its
+ * whole line has arrived, so a slow or stalled client never holds up the others. A client that sends no line within
+ * {@link #HEADER_TIMEOUT_MILLIS} is answered with an error.
+ * <p>
+ * Every target, such as an X display selected with {@code --target}, gets its own {@link TypingEngine} with its own
+ * dispatcher thread, so jobs for different targets are typed in parallel. Jobs for the same target are typed strictly
+ * in the order they were accepted, so concurrent submissions never interleave, even when they differ in pacing,
+ * layout or backend. Within a target, every distinct set of options gets its own backend instance.
+ * <p>
+ * At most {@link #MAX_TARGETS} targets, and {@link #MAX_BACKENDS_PER_TARGET} backends per target, are kept. The least
+ * recently used ones are closed once the jobs already queued for them are done.
+ */
+public class TypingDaemon implements AutoCloseable {
+
+    /**
+     * Longest accepted option line, in bytes.
+     */
+    static final int MAX_HEADER_LENGTH = 4096;
+    /**
+     * Longest wait for a connection's option line.
+     */
+    static final long HEADER_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Most targets, and so engines, kept at once.
+     */
+    static final int MAX_TARGETS = 8;
+    /**
+     * Most backends, one per set of options, kept open for each target.
+     */
+    static final int MAX_BACKENDS_PER_TARGET = 4;
+
+    private static final String WARM_UP_TEXT = "The quick brown fox jumps over the lazy dog. 0123456789 !\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~\n";
+    private static final int WARM_UP_ROUNDS = 2000;
+
+    private final Path socketPath;
+    private final Function<String[], KeystrokeStrategy> strategies;
+    private final Function<String[], String> targetNames;
+    private final Map<String, Target> targets = new LinkedHashMap<>(16, 0.75f, true) { // Only used by the worker thread
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Target> eldest) {
+            if (size() <= MAX_TARGETS) return false;
+            eldest.getValue().close();
+            return true;
+        }
+    };
+    private final LinkedBlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread worker;
+
+    /**
+     * A connection whose option line has been read. The header is positioned just past the line's newline, and its
+     * remaining bytes are the start of the text.
+     */
+    private record Request(SocketChannel connection, ByteBuffer header) {
+    }
+
+    /**
+     * Binds the socket, replacing a stale socket file left by a previous daemon, and initializes the default backend.
+     *
+     * @param socketPath  The path of the socket file.
+     * @param strategies  Creates the strategy for a job's options; called once per distinct set of options.
+     * @param targetNames Names the target a job's options type into; jobs with the same name are typed in order.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public TypingDaemon(Path socketPath, Function<String[], KeystrokeStrategy> strategies,
+                        Function<String[], String> targetNames) throws IOException {
+        this.socketPath = socketPath;
+        this.strategies = strategies;
+        this.targetNames = targetNames;
+        warmUp(strategy(new String[0]));
+        Files.deleteIfExists(socketPath);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        server.configureBlocking(false);
+        this.selector = Selector.open();
+        this.worker = new Thread(this::runWorker, "typing-daemon");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Accepts connections and reads their option lines until the daemon is closed.
+     */
+    public void run() throws IOException {
+        List<SelectionKey> read = new ArrayList<>();
+        try {
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            while (server.isOpen()) {
+                selector.select(TimeUnit.SECONDS.toMillis(1)); // Wakes up now and then to time out stalled clients
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isValid() && key.isReadable() && readHeader(key)) {
+                        read.add(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+                long now = System.nanoTime();
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof PendingHeader pending && !pending.done && now - pending.deadline > 0) {
+                        pending.fail("No option line within " + HEADER_TIMEOUT_MILLIS + " ms");
+                        read.add(key);
+                    }
+                }
+                handOver(read);
+                read.clear();
+            }
+        } catch (ClosedChannelException e) {
+            // Closed, stop accepting
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.channel() instanceof SocketChannel connection) closeQuietly(connection);
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Connections whose option line has not been read yet
+     * are closed without a reply. Jobs already handed to an engine are typed and answered before this returns, then
+     * every backend is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        selector.wakeup();
+        Files.deleteIfExists(socketPath);
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWorker() {
+        try {
+            while (true) {
+                serve(requests.take());
+            }
+        } catch (InterruptedException e) {
+            // Closed, stop serving; the interrupt is cleared so the engines can be waited for
+        } finally {
+            requests.forEach(request -> closeQuietly(request.connection()));
+            targets.values().forEach(Target::close);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel connection = server.accept();
+        if (connection == null) return; // Taken by another wake-up
+        connection.configureBlocking(false);
+        connection.register(selector, SelectionKey.OP_READ, new PendingHeader());
+    }
+
+    /**
+     * Reads what has arrived of a connection's option line.
+     *
+     * @return True once the line is complete, or the connection has failed to send one.
+     */
+    private static boolean readHeader(SelectionKey key) {
+        SocketChannel connection = (SocketChannel) key.channel();
+        PendingHeader pending = (PendingHeader) key.attachment();
+        try {
+            if (connection.read(pending.buffer) < 0) {
+                pending.fail("Missing option line");
+            } else if (!pending.complete() && !pending.buffer.hasRemaining()) {
+                pending.fail("Option line is too long");
+            }
+        } catch (IOException e) {
+            System.err.println("Daemon connection failed: " + e.getMessage());
+            closeQuietly(connection);
+        }
+        return pending.done;
+    }
+
+    /**
+     * Switches connections whose option line has been read back to blocking mode and queues their jobs, or answers
+     * them with the reason they have none.
+     */
+    private void handOver(List<SelectionKey> keys) throws IOException {
+        if (keys.isEmpty()) return;
+        keys.forEach(SelectionKey::cancel);
+        selector.selectNow(); // Deregisters the cancelled keys, as a channel cannot block while registered
+        for (SelectionKey key : keys) {
+            SocketChannel connection = (SocketChannel) key.channel();
+            PendingHeader pending = (PendingHeader) key.attachment();
+            try {
+                connection.configureBlocking(true);
+                if (pending.error != null) {
+                    reply(connection, "ERROR " + pending.error);
+                } else {
+                    requests.add(new Request(connection, pending.buffer));
+                }
+            } catch (IOException e) {
+                System.err.println("Daemon connection failed: " + e.getMessage());
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * Queues the connection's job on its engine. The reply is sent, and the connection closed, once the job is done,
+     * so the next connection can be served meanwhile.
+     */
+    private void serve(Request request) {
+        SocketChannel connection = request.connection();
+        TypingJob job;
+        try {
+            ByteBuffer header = request.header();
+            String[] options = parseOptions(header);
+            TextChannel text = new TextChannel(header, connection);
+            job = target(options).engine.submit(strategy(options), (compiler, sink) -> StreamingInput.plan(compiler, text, sink));
+        } catch (RuntimeException e) {
+            reply(connection, "ERROR " + e.getMessage()); // Invalid options or a backend that failed to start
+            return;
+        }
+        job.whenComplete((typed, failure) -> {
+            if (failure instanceof CompletionException) failure = failure.getCause();
+            reply(connection, failure == null ? "OK " + typed : "ERROR " + failure.getMessage());
+        });
+    }
+
+    private static void reply(SocketChannel connection, String reply) {
+        try {
+            connection.write(StandardCharsets.UTF_8.encode(reply + "\n"));
+        } catch (IOException e) {
+            System.err.println("Daemon reply failed: " + e.getMessage());
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+
+    private static String[] parseOptions(ByteBuffer header) {
+        String line = new String(header.array(), 0, header.position() - 1, StandardCharsets.UTF_8).trim();
+        return line.isEmpty() ? new String[0] : line.split("\\s+");
+    }
+
+    /**
+     * Returns the target the options type into, starting its engine on first use. Starting one may evict the least
+     * recently used target, which waits for that target's queued jobs.
+     */
+    private Target target(String[] options) {
+        return targets.computeIfAbsent(targetNames.apply(Arrays.copyOf(options, options.length)).toLowerCase(), name -> new Target());
+    }
+
+    /**
+     * Returns the backend for the options, creating it on first use so later jobs reuse it.
+     */
+    private KeystrokeStrategy strategy(String[] options) {
+        Target target = target(options);
+        String key = String.join(" ", options).toLowerCase();
+        KeystrokeStrategy strategy = target.backends.get(key);
+        if (strategy == null) {
+            strategy = strategies.apply(Arrays.copyOf(options, options.length));
+            target.backends.put(key, strategy);
+        }
+        return strategy;
+    }
+
+    /**
+     * Releases what a backend holds, such as an X connection or a uinput virtual keyboard.
+     */
+    private static void closeBackend(KeystrokeStrategy strategy) {
+        if (!(strategy instanceof AutoCloseable closeable)) return;
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            System.err.println("Error closing the backend: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the compile path until the JIT has compiled it, so the first job is not typed by the interpreter.
+     */
+    private static void warmUp(KeystrokeStrategy strategy) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            strategy.compile(WARM_UP_TEXT);
+        }
+    }
+
+    /**
+     * One target: the engine typing its jobs in order, and its backends, one per set of options.
+     */
+    private static final class Target {
+
+        private final TypingEngine engine = TypingEngine.start(null);
+        private final Map<String, KeystrokeStrategy> backends = new LinkedHashMap<>(8, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeystrokeStrategy> eldest) {
+                if (size() <= MAX_BACKENDS_PER_TARGET) return false;
+                KeystrokeStrategy strategy = eldest.getValue();
+                engine.submit(strategy, (compiler, sink) -> {
+                    // Nothing to type; completes once the jobs queued before it are done
+                }).whenComplete((typed, failure) -> closeBackend(strategy));
+                return true;
+            }
+        };
+
+        /**
+         * Finishes the target's jobs, then closes its backends.
+         */
+        void close() {
+            engine.close();
+            backends.values().forEach(TypingDaemon::closeBackend);
+        }
+    }
+
+    /**
+     * The text of a job: whatever followed the option line in the header buffer, then the rest of the connection.
+     * Closing it leaves the connection open for the reply.
+     */
+    private static final class TextChannel implements ReadableByteChannel {
+
+        private final ByteBuffer header;
+        private final SocketChannel connection;
+
+        TextChannel(ByteBuffer header, SocketChannel connection) {
+            this.header = header;
+            this.connection = connection;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            if (!header.hasRemaining()) return connection.read(target);
+            int count = Math.min(header.remaining(), target.remaining());
+            target.put(header.slice(header.position(), count));
+            header.position(header.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return connection.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The connection is closed once the reply is sent
+        }
+    }
+
+    /**
+     * The option line of a connection, read as it arrives.
+     */
+    private static final class PendingHeader {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+        private final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HEADER_TIMEOUT_MILLIS);
+        private int scanned;
+        private boolean done;
+        private String error;
+
+        /**
+         * Looks for the end of the line in the bytes read so far. Once found, the buffer is flipped and positioned
+         * just past the newline.
+         */
+        boolean complete() {
+            for (; scanned < buffer.position(); scanned++) {
+                if (buffer.get(scanned) == '\n') {
+                    buffer.flip();
+                    buffer.position(scanned + 1);
+                    done = true;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void fail(String message) {
+            error = message;
+            done = true;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // Nothing left to clean up
+        }
+    }
+}
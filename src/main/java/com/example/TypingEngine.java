@@ -0,0 +1,256 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous typing engine that runs jobs one after another on its own threads.
+ * <p>
+ * A planner thread reads and compiles each job's input into chunk-sized plans and hands them to a dedicated
+ * dispatcher thread through a bounded lock-free queue, so reading and compiling the next chunk overlaps with typing
+ * the current one. Each side parks while it has nothing to do and is unparked by the other as soon as there is.
+ * Callers get a {@link TypingJob} back immediately and can wait on it, poll its progress or cancel it.
+ */
+public final class TypingEngine implements AutoCloseable {
+
+    /**
+     * Default number of chunks buffered between the planner and the dispatcher.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * Input of a typing job: compiles its text into plans and passes each one to the sink.
+     */
+    @FunctionalInterface
+    public interface Source {
+        void plan(KeystrokeCompiler compiler, Consumer<KeystrokePlan> sink) throws IOException;
+    }
+
+    /**
+     * A plan queued for dispatch; a null plan marks the end of its job, a null job the end of the engine.
+     */
+    private record Chunk(TypingJob job, KeystrokePlan plan) {
+    }
+
+    private static final Chunk SHUTDOWN_CHUNK = new Chunk(null, null);
+
+    private final KeystrokeStrategy strategy;
+    private final LinkedBlockingQueue<TypingJob> jobs = new LinkedBlockingQueue<>();
+    private final SpscQueue<Chunk> chunks;
+    private final TypingJob shutdownJob = new TypingJob(null, null, null);
+    private final Thread planner;
+    private final Thread dispatcher;
+    private final Object dispatchLock = new Object();
+    private TypingJob dispatching; // Guarded by dispatchLock
+    private boolean closed; // Guarded by jobs, so no job is queued behind the shutdown marker
+
+    private TypingEngine(KeystrokeStrategy strategy, int queueCapacity) {
+        this.strategy = strategy;
+        this.chunks = new SpscQueue<>(queueCapacity);
+        this.planner = new Thread(this::runPlanner, "typing-planner");
+        this.dispatcher = new Thread(this::runDispatcher, "typing-dispatcher");
+        planner.setDaemon(true);
+        dispatcher.setDaemon(true);
+    }
+
+    public static TypingEngine start(KeystrokeStrategy strategy) {
+        return start(strategy, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates an engine and starts its threads.
+     *
+     * @param strategy      The strategy that types the jobs submitted without one, or null if every job brings its own.
+     * @param queueCapacity The number of chunks buffered between planning and dispatch.
+     * @return The running engine.
+     */
+    public static TypingEngine start(KeystrokeStrategy strategy, int queueCapacity) {
+        TypingEngine engine = new TypingEngine(strategy, queueCapacity);
+        engine.planner.start();
+        engine.dispatcher.start();
+        return engine;
+    }
+
+    public KeystrokeStrategy strategy() {
+        return strategy;
+    }
+
+    public TypingJob submit(String text) {
+        return submit((compiler, sink) -> StreamingInput.plan(compiler, text, sink));
+    }
+
+    /**
+     * Submits an already compiled plan. The plan must come from this engine's strategy's compiler.
+     */
+    public TypingJob submit(KeystrokePlan plan) {
+        return submit((compiler, sink) -> sink.accept(plan));
+    }
+
+    public TypingJob submit(Reader reader) {
+        return submit((compiler, sink) -> StreamingInput.plan(compiler, reader, sink));
+    }
+
+    public TypingJob submit(ReadableByteChannel channel) {
+        return submit((compiler, sink) -> StreamingInput.plan(compiler, channel, sink));
+    }
+
+    /**
+     * Queues a job behind any jobs already submitted.
+     *
+     * @param source The input of the job.
+     * @return The job, already queued.
+     * @throws RejectedExecutionException If the engine is closed.
+     */
+    public TypingJob submit(Source source) {
+        return submit(strategy, source);
+    }
+
+    /**
+     * Queues a job typed by another strategy that drives the same target, for example with other pacing or another
+     * layout. It keeps its place in this engine's order, so it never interleaves with the other jobs.
+     *
+     * @param strategy The strategy that compiles and types this job.
+     * @param source   The input of the job.
+     * @return The job, already queued.
+     * @throws RejectedExecutionException If the engine is closed.
+     */
+    public TypingJob submit(KeystrokeStrategy strategy, Source source) {
+        TypingJob job = new TypingJob(this, strategy, source);
+        synchronized (jobs) {
+            if (closed) throw new RejectedExecutionException("Typing engine is closed");
+            jobs.add(job);
+        }
+        return job;
+    }
+
+    /**
+     * Stops accepting jobs and waits until every job already submitted has finished.
+     */
+    @Override
+    public void close() {
+        synchronized (jobs) {
+            if (closed) return;
+            closed = true;
+            jobs.add(shutdownJob);
+        }
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void interruptIfDispatching(TypingJob job) {
+        synchronized (dispatchLock) {
+            if (dispatching == job) dispatcher.interrupt();
+        }
+    }
+
+    private void runPlanner() {
+        try {
+            while (true) {
+                TypingJob job = jobs.take();
+                if (job == shutdownJob) {
+                    enqueue(SHUTDOWN_CHUNK);
+                    return;
+                }
+                if (job.isDone()) continue; // Cancelled while queued
+                plan(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void plan(TypingJob job) {
+        try {
+            KeystrokeCompiler compiler = job.strategy().compiler();
+            Consumer<KeystrokePlan> sink = plan -> {
+                if (job.isDone()) throw new CancellationException();
+                job.planned(plan.characterCount());
+                enqueue(new Chunk(job, plan));
+            };
+            compiler.reset(); // A compiler shared across jobs must not carry one job's state into the next
+            job.source().plan(compiler, sink);
+            StreamingInput.end(compiler, sink);
+        } catch (CancellationException e) {
+            // Cancelled mid-stream, nothing more to plan
+        } catch (Throwable e) { // Even an Error, such as a missing native library, fails only this job
+            job.completeExceptionally(e);
+        }
+        enqueue(new Chunk(job, null)); // Even a cancelled or failed job ends, so a started backend can end it too
+    }
+
+    private void enqueue(Chunk chunk) {
+        while (!chunks.offer(chunk)) {
+            LockSupport.park(this); // Dispatcher is behind, wait until it takes a chunk
+        }
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void runDispatcher() {
+        TypingJob started = null; // The last job whose startJob() ran
+        while (true) {
+            Chunk chunk = chunks.poll();
+            if (chunk == null) {
+                LockSupport.park(this); // An unpark after the failed poll leaves a permit, so no wake-up is missed
+                continue;
+            }
+            LockSupport.unpark(planner);
+
+            TypingJob job = chunk.job();
+            if (job == null) return;
+            if (chunk.plan() == null) {
+                if (job == started) end(job);
+                job.complete(job.typedCharacters());
+            } else if (dispatch(job, chunk.plan(), job != started)) {
+                started = job;
+            }
+        }
+    }
+
+    /**
+     * Types one plan of a job, starting the job first on its first plan. The job is checked under the lock that
+     * {@link #interruptIfDispatching(TypingJob)} takes, so a cancellation either skips the plan or interrupts it.
+     *
+     * @return True if the job has been started, by this plan or an earlier one.
+     */
+    private boolean dispatch(TypingJob job, KeystrokePlan plan, boolean first) {
+        synchronized (dispatchLock) {
+            if (job.isDone()) return !first;
+            dispatching = job;
+        }
+        boolean started = !first;
+        try {
+            if (first) job.strategy().startJob();
+            started = true;
+            job.strategy().replay(plan);
+            if (!Thread.currentThread().isInterrupted()) job.typed(plan.characterCount()); // Cancelled plans stop part way
+        } catch (Throwable e) { // Even an Error fails only this job, and the dispatcher goes on with the next
+            job.completeExceptionally(e);
+        } finally {
+            synchronized (dispatchLock) {
+                dispatching = null;
+                Thread.interrupted(); // Clear a cancellation interrupt so it cannot leak into the next job
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Ends a started job once its last plan is typed, or once it stopped early.
+     */
+    private void end(TypingJob job) {
+        try {
+            job.strategy().endJob();
+        } catch (Throwable e) { // Fails only this job, like an error while typing it
+            job.completeExceptionally(e);
+        }
+    }
+}
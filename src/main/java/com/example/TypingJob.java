@@ -0,0 +1,69 @@
+package com.example;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A typing job submitted to a {@link TypingEngine}. Completes with the number of characters typed once the last
+ * key event has been dispatched.
+ * <p>
+ * Cancelling a job stops it mid-stream: no further chunks are planned or dispatched, and the chunk being typed is
+ * interrupted, which releases any modifiers it was holding.
+ */
+public class TypingJob extends CompletableFuture<Long> {
+
+    private final TypingEngine engine;
+    private final KeystrokeStrategy strategy;
+    private final TypingEngine.Source source;
+    private volatile long plannedCharacters;
+    private volatile long typedCharacters;
+
+    TypingJob(TypingEngine engine, KeystrokeStrategy strategy, TypingEngine.Source source) {
+        this.engine = engine;
+        this.strategy = strategy;
+        this.source = source;
+    }
+
+    KeystrokeStrategy strategy() {
+        return strategy;
+    }
+
+    TypingEngine.Source source() {
+        return source;
+    }
+
+    /**
+     * @return The number of characters compiled so far.
+     */
+    public long plannedCharacters() {
+        return plannedCharacters;
+    }
+
+    /**
+     * @return The number of characters typed so far.
+     */
+    public long typedCharacters() {
+        return typedCharacters;
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField") // Each counter has a single writer thread
+    void planned(int characters) {
+        plannedCharacters += characters;
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    void typed(int characters) {
+        typedCharacters += characters;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && engine != null) engine.interruptIfDispatching(this);
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return "TypingJob{typed=" + typedCharacters + ", planned=" + plannedCharacters + ", done=" + isDone() + "}";
+    }
+}
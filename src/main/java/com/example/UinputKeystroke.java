@@ -0,0 +1,478 @@
+package com.example;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keystroke strategy for Linux that types through a uinput virtual keyboard, so it needs neither AWT nor an X
+ * server and works on a bare console or under Wayland.
+ * <p>
+ * Each batch is encoded into a reusable direct buffer as {@code input_event} records, every key event followed by
+ * an {@code EV_SYN} report, and written with a single {@code write()}. The events are stamped with the time they
+ * are written; the delay between characters comes from the pacer, as with every other backend. The kernel restamps
+ * events written to {@code /dev/uinput}, but a plain file or pipe given as the device receives the exact byte
+ * stream, which can be checked without kernel access. Opening {@code /dev/uinput} usually needs root or membership
+ * of the {@code input} group.
+ */
+public class UinputKeystroke implements KeystrokeStrategy, AutoCloseable {
+
+    public static final String DEFAULT_DEVICE = "/dev/uinput";
+    static final String DEVICE_NAME = "TextToKeyStroke virtual keyboard";
+
+    @SuppressWarnings("java:S115")
+    static final int EV_SYN = 0x00;
+    @SuppressWarnings("java:S115")
+    static final int EV_KEY = 0x01;
+    @SuppressWarnings("java:S115")
+    static final int SYN_REPORT = 0;
+    @SuppressWarnings("java:S115")
+    static final int KEY_LEFTSHIFT = 42;
+    @SuppressWarnings("java:S115")
+    static final int KEY_RIGHTALT = 100;
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFCHR = 0020000;
+    private static final int S_IFIFO = 0010000;
+
+    /**
+     * Size of an {@code input_event}: a {@code timeval} of two longs, then type, code and value.
+     */
+    static final int EVENT_SIZE = 2 * Native.LONG_SIZE + 8;
+    /**
+     * Key events encoded per write at most; longer batches are written in several.
+     */
+    static final int BUFFER_KEY_EVENTS = 2048;
+    /**
+     * Time given to udev and the display server to pick up a new virtual keyboard before typing starts.
+     */
+    static final int DEVICE_SETTLE_MILLIS = 500;
+
+    /**
+     * Linux key codes ({@code input-event-codes.h}) for the {@link KeyEvent} key positions layouts are defined in,
+     * and the navigation and editing keys of {@link KeystrokeCompiler#keyCodeFor}.
+     */
+    private static final Map<Integer, Integer> LINUX_KEY_CODES = Map.ofEntries(
+            Map.entry(KeyEvent.VK_ESCAPE, 1), Map.entry(KeyEvent.VK_1, 2), Map.entry(KeyEvent.VK_2, 3),
+            Map.entry(KeyEvent.VK_3, 4), Map.entry(KeyEvent.VK_4, 5), Map.entry(KeyEvent.VK_5, 6),
+            Map.entry(KeyEvent.VK_6, 7), Map.entry(KeyEvent.VK_7, 8), Map.entry(KeyEvent.VK_8, 9),
+            Map.entry(KeyEvent.VK_9, 10), Map.entry(KeyEvent.VK_0, 11), Map.entry(KeyEvent.VK_MINUS, 12),
+            Map.entry(KeyEvent.VK_EQUALS, 13), Map.entry(KeyEvent.VK_BACK_SPACE, 14), Map.entry(KeyEvent.VK_TAB, 15),
+            Map.entry(KeyEvent.VK_Q, 16), Map.entry(KeyEvent.VK_W, 17), Map.entry(KeyEvent.VK_E, 18),
+            Map.entry(KeyEvent.VK_R, 19), Map.entry(KeyEvent.VK_T, 20), Map.entry(KeyEvent.VK_Y, 21),
+            Map.entry(KeyEvent.VK_U, 22), Map.entry(KeyEvent.VK_I, 23), Map.entry(KeyEvent.VK_O, 24),
+            Map.entry(KeyEvent.VK_P, 25), Map.entry(KeyEvent.VK_OPEN_BRACKET, 26), Map.entry(KeyEvent.VK_CLOSE_BRACKET, 27),
+            Map.entry(KeyEvent.VK_ENTER, 28), Map.entry(KeyEvent.VK_A, 30), Map.entry(KeyEvent.VK_S, 31),
+            Map.entry(KeyEvent.VK_D, 32), Map.entry(KeyEvent.VK_F, 33), Map.entry(KeyEvent.VK_G, 34),
+            Map.entry(KeyEvent.VK_H, 35), Map.entry(KeyEvent.VK_J, 36), Map.entry(KeyEvent.VK_K, 37),
+            Map.entry(KeyEvent.VK_L, 38), Map.entry(KeyEvent.VK_SEMICOLON, 39), Map.entry(KeyEvent.VK_QUOTE, 40),
+            Map.entry(KeyEvent.VK_BACK_QUOTE, 41), Map.entry(KeyEvent.VK_BACK_SLASH, 43), Map.entry(KeyEvent.VK_Z, 44),
+            Map.entry(KeyEvent.VK_X, 45), Map.entry(KeyEvent.VK_C, 46), Map.entry(KeyEvent.VK_V, 47),
+            Map.entry(KeyEvent.VK_B, 48), Map.entry(KeyEvent.VK_N, 49), Map.entry(KeyEvent.VK_M, 50),
+            Map.entry(KeyEvent.VK_COMMA, 51), Map.entry(KeyEvent.VK_PERIOD, 52), Map.entry(KeyEvent.VK_SLASH, 53),
+            Map.entry(KeyEvent.VK_SPACE, 57), Map.entry(KeyEvent.VK_LESS, 86), Map.entry(KeyEvent.VK_SHIFT, KEY_LEFTSHIFT),
+            Map.entry(KeyEvent.VK_CONTROL, 29), Map.entry(KeyEvent.VK_HOME, 102), Map.entry(KeyEvent.VK_LEFT, 105),
+            Map.entry(KeyEvent.VK_RIGHT, 106), Map.entry(KeyEvent.VK_END, 107), Map.entry(KeyEvent.VK_DOWN, 108),
+            Map.entry(KeyEvent.VK_DELETE, 111));
+
+    private static final Map<KeyLayout, KeystrokeCompiler> COMPILERS = new ConcurrentHashMap<>();
+
+    private final Pacer pacer;
+    private final WritableByteChannel device;
+    private final LongSupplier clockMicros;
+    private final KeystrokeCompiler compiler;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_KEY_EVENTS * 2 * EVENT_SIZE).order(ByteOrder.nativeOrder());
+    private final KeyEventBatch batch = new KeyEventBatch();
+    private final int[] single = new int[1];
+    private final KeyEventBatch singleBatch = new KeyEventBatch().set(single, 0, 1);
+
+    public static class UinputInitializationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public UinputInitializationException(String message) {
+            super(message);
+        }
+
+        public UinputInitializationException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Registers this backend as {@code --uinput}. libc is only loaded once a uinput device is opened.
+     */
+    public static class Provider implements KeystrokeStrategyProvider {
+        @Override
+        public String name() {
+            return "uinput";
+        }
+
+        @Override
+        public String description() {
+            return "Type through a Linux uinput virtual keyboard, without X.";
+        }
+
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout) {
+            return create(pacer, layout, null);
+        }
+
+        /**
+         * @param target The uinput device, or an existing named pipe to write the raw events to instead.
+         */
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout, String target) {
+            return new UinputKeystroke(pacer, layout, Paths.get(target != null ? target : DEFAULT_DEVICE));
+        }
+
+        @Override
+        public KeystrokeCompiler compiler(KeyLayout layout, String target) {
+            return compilerFor(layout);
+        }
+    }
+
+    /**
+     * Creates a virtual keyboard when the path is a character device such as {@code /dev/uinput}; an existing named
+     * pipe receives the raw event stream instead. Any other path is rejected.
+     *
+     * @param pacer  The pacer scheduling the characters.
+     * @param layout The keyboard layout of the target.
+     * @param device The uinput device or the named pipe.
+     */
+    public UinputKeystroke(Pacer pacer, KeyLayout layout, Path device) {
+        this(pacer, layout, openDevice(device), wallClockMicros());
+    }
+
+    /**
+     * @param pacer       The pacer scheduling the characters.
+     * @param layout      The keyboard layout of the target.
+     * @param device      The channel receiving the {@code input_event} records.
+     * @param clockMicros Returns the time to stamp events with, in microseconds since the epoch.
+     */
+    UinputKeystroke(Pacer pacer, KeyLayout layout, WritableByteChannel device, LongSupplier clockMicros) {
+        this.pacer = pacer;
+        this.device = device;
+        this.clockMicros = clockMicros;
+        this.compiler = compilerFor(layout);
+    }
+
+    /**
+     * Returns the shared compiler emitting Linux key codes for a layout.
+     */
+    static KeystrokeCompiler compilerFor(KeyLayout layout) {
+        return COMPILERS.computeIfAbsent(layout, UinputCompiler::new);
+    }
+
+    /**
+     * Opens a character device as a virtual keyboard, or an existing named pipe as an event sink. Nothing else is
+     * accepted, so a mistyped or hostile target can never create or overwrite a file.
+     */
+    private static WritableByteChannel openDevice(Path path) {
+        try {
+            int type = fileType(path);
+            if (type == S_IFCHR) return UinputDevice.create(path.toString());
+            if (type == S_IFIFO) return FileChannel.open(path, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UinputInitializationException("Cannot open " + path + ": " + e.getMessage(), e);
+        }
+        throw new UinputInitializationException(path + " is neither a uinput device nor a named pipe");
+    }
+
+    /**
+     * Returns the {@code S_IFMT} bits of the file's mode, or 0 when it does not exist.
+     */
+    private static int fileType(Path path) throws IOException {
+        if (!Files.exists(path)) return 0;
+        return (Integer) Files.getAttribute(path, "unix:mode") & S_IFMT;
+    }
+
+    /**
+     * Wall-clock microseconds, read from {@link System#nanoTime()} against a single epoch reading.
+     */
+    private static LongSupplier wallClockMicros() {
+        long epochMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+        long startNanos = System.nanoTime();
+        return () -> epochMicros + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
+    @Override
+    public void replay(KeystrokePlan plan) {
+        try {
+            KeyEventBatch.replay(this, plan, pacer, batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void startJob() {
+        pacer.start();
+    }
+
+    @Override
+    public void dispatchEvent(int event) {
+        single[0] = event;
+        dispatch(singleBatch);
+    }
+
+    /**
+     * Encodes the batch and writes it in one call, or in one call per {@link #BUFFER_KEY_EVENTS} events.
+     */
+    @Override
+    public void dispatch(KeyEventBatch events) {
+        long micros = clockMicros.getAsLong();
+        long seconds = micros / 1_000_000;
+        long fraction = micros % 1_000_000;
+        buffer.clear();
+        for (int i = 0; i < events.size(); i++) {
+            if (buffer.remaining() < 2 * EVENT_SIZE) write();
+            int event = events.event(i);
+            putEvent(seconds, fraction, EV_KEY, KeystrokePlan.operand(event), KeystrokePlan.op(event) == KeystrokePlan.OP_PRESS ? 1 : 0);
+            putEvent(seconds, fraction, EV_SYN, SYN_REPORT, 0);
+        }
+        write();
+    }
+
+    private void putEvent(long seconds, long micros, int type, int code, int value) {
+        if (Native.LONG_SIZE == 8) {
+            buffer.putLong(seconds).putLong(micros);
+        } else {
+            buffer.putInt((int) seconds).putInt((int) micros);
+        }
+        buffer.putShort((short) type).putShort((short) code).putInt(value);
+    }
+
+    private void write() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) device.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing to the uinput device", e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Destroys the virtual keyboard, or closes the event sink.
+     */
+    @Override
+    public void close() throws IOException {
+        device.close();
+    }
+
+    /**
+     * Compiles characters into Linux key codes, resolving them through the layout's key positions.
+     */
+    private static class UinputCompiler extends KeystrokeCompiler {
+        UinputCompiler(KeyLayout layout) {
+            super(layout);
+        }
+
+        @Override
+        protected void compileCodePoint(int codePoint, KeystrokePlan.Builder builder) {
+            int entry = layout().lookup(codePoint);
+            Integer keyCode = entry == KeyLayout.UNMAPPED ? null : LINUX_KEY_CODES.get(KeyLayout.keyCode(entry));
+            if (keyCode == null) {
+                skipped(); // No key on the layout, and no AWT fallback without a display
+                return;
+            }
+
+            typeKey(keyCode | (entry & KeyLayout.MODIFIERS), builder);
+        }
+
+        @Override
+        protected int shiftKeyCode() {
+            return KEY_LEFTSHIFT;
+        }
+
+        @Override
+        protected int altGraphKeyCode() {
+            return KEY_RIGHTALT;
+        }
+
+        /**
+         * Letters resolve to the key typing them on the layout, since shortcuts such as Ctrl+V follow the layout.
+         */
+        @Override
+        protected int keyCodeFor(int awtKeyCode) {
+            if (awtKeyCode >= KeyEvent.VK_A && awtKeyCode <= KeyEvent.VK_Z) {
+                int entry = layout().lookup(Character.toLowerCase(awtKeyCode));
+                if (entry != KeyLayout.UNMAPPED && (entry & KeyLayout.MODIFIERS) == 0) awtKeyCode = KeyLayout.keyCode(entry);
+            }
+            return LINUX_KEY_CODES.getOrDefault(awtKeyCode, -1);
+        }
+    }
+
+    /**
+     * A uinput virtual keyboard, written to through its file descriptor.
+     */
+    static final class UinputDevice implements WritableByteChannel {
+
+        static final int O_WRONLY = 01;
+        static final int O_NONBLOCK = 04000;
+        static final int BUS_VIRTUAL = 0x06;
+        static final int UINPUT_MAX_NAME_SIZE = 80;
+        @SuppressWarnings("java:S115")
+        static final long UI_DEV_CREATE = 0x5501;
+        @SuppressWarnings("java:S115")
+        static final long UI_DEV_DESTROY = 0x5502;
+        @SuppressWarnings("java:S115")
+        static final long UI_DEV_SETUP = 0x405c5503;
+        @SuppressWarnings("java:S115")
+        static final long UI_SET_EVBIT = 0x40045564;
+        @SuppressWarnings("java:S115")
+        static final long UI_SET_KEYBIT = 0x40045565;
+
+        private final int fd;
+        private boolean open = true;
+
+        private UinputDevice(int fd) {
+            this.fd = fd;
+        }
+
+        /**
+         * Opens the uinput device and creates a keyboard with every key the compilers can emit.
+         */
+        static UinputDevice create(String path) throws IOException {
+            int fd = CLibrary.INSTANCE.open(path, O_WRONLY | O_NONBLOCK);
+            if (fd < 0) throw new IOException(error("open"));
+            UinputDevice device = new UinputDevice(fd);
+            try {
+                device.ioctl(UI_SET_EVBIT, EV_KEY);
+                device.ioctl(UI_SET_KEYBIT, KEY_LEFTSHIFT);
+                device.ioctl(UI_SET_KEYBIT, KEY_RIGHTALT);
+                for (int keyCode : LINUX_KEY_CODES.values()) {
+                    device.ioctl(UI_SET_KEYBIT, keyCode);
+                }
+
+                ByteBuffer setup = ByteBuffer.allocateDirect(8 + UINPUT_MAX_NAME_SIZE + 4).order(ByteOrder.nativeOrder());
+                setup.putShort((short) BUS_VIRTUAL).putShort((short) 0).putShort((short) 0).putShort((short) 1); // struct input_id
+                setup.put(DEVICE_NAME.getBytes(StandardCharsets.US_ASCII)); // NUL-padded, the buffer is zeroed
+                if (CLibrary.INSTANCE.ioctl(fd, new NativeLong(UI_DEV_SETUP), Native.getDirectBufferPointer(setup)) < 0) {
+                    throw new IOException(error("UI_DEV_SETUP"));
+                }
+                if (CLibrary.INSTANCE.ioctl(fd, new NativeLong(UI_DEV_CREATE), 0) < 0) throw new IOException(error("UI_DEV_CREATE"));
+            } catch (IOException e) {
+                device.close();
+                throw e;
+            }
+
+            try {
+                Thread.sleep(DEVICE_SETTLE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return device;
+        }
+
+        private void ioctl(long request, int value) throws IOException {
+            if (CLibrary.INSTANCE.ioctl(fd, new NativeLong(request), value) < 0) throw new IOException(error("ioctl"));
+        }
+
+        /**
+         * Writes from the buffer's position. The buffer must be direct.
+         */
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            Pointer data = Native.getDirectBufferPointer(src).share(src.position());
+            int written = CLibrary.INSTANCE.write(fd, data, new NativeLong(src.remaining())).intValue();
+            if (written < 0) throw new IOException(error("write"));
+            src.position(src.position() + written);
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            if (!open) return;
+            open = false;
+            CLibrary.INSTANCE.ioctl(fd, new NativeLong(UI_DEV_DESTROY), 0);
+            CLibrary.INSTANCE.close(fd);
+        }
+
+        private static String error(String call) {
+            return call + " failed with errno " + Native.getLastError();
+        }
+    }
+
+    /**
+     * Interface for the libc calls driving uinput.
+     */
+    public interface CLibrary extends Library {
+        CLibrary INSTANCE = Native.load("c", CLibrary.class);
+
+        /**
+         * Opens a file.
+         *
+         * @param path  The path.
+         * @param flags The access mode and flags.
+         * @return The file descriptor, or -1 on failure.
+         */
+        int open(String path, int flags);
+
+        /**
+         * Performs a device control request with an integer argument.
+         *
+         * @param fd      The file descriptor.
+         * @param request The request code.
+         * @param value   The argument.
+         * @return -1 on failure.
+         */
+        int ioctl(int fd, NativeLong request, int value);
+
+        /**
+         * Performs a device control request with a pointer argument.
+         *
+         * @param fd      The file descriptor.
+         * @param request The request code.
+         * @param data    The argument.
+         * @return -1 on failure.
+         */
+        int ioctl(int fd, NativeLong request, Pointer data);
+
+        /**
+         * Writes bytes to a file descriptor.
+         *
+         * @param fd    The file descriptor.
+         * @param data  The bytes.
+         * @param count The number of bytes.
+         * @return The number of bytes written, or -1 on failure.
+         */
+        NativeLong write(int fd, Pointer data, NativeLong count);
+
+        /**
+         * Closes a file descriptor.
+         *
+         * @param fd The file descriptor.
+         */
+        int close(int fd);
+    }
+}
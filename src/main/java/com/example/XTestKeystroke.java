@@ -0,0 +1,449 @@
+package com.example;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+
+/**
+ * Keystroke strategy for X11 that injects events through the XTest extension directly, bypassing AWT.
+ * <p>
+ * The keysym to keycode table is read once from {@code XGetKeyboardMapping} when the strategy is created, and the
+ * connection is flushed once per batch instead of synchronised after every event. Works against any X server
+ * named by {@code DISPLAY}, including Xvfb.
+ */
+public class XTestKeystroke implements KeystrokeStrategy, AutoCloseable {
+
+    @SuppressWarnings("java:S115")
+    static final long XK_BackSpace = 0xff08;
+    @SuppressWarnings("java:S115")
+    static final long XK_Tab = 0xff09;
+    @SuppressWarnings("java:S115")
+    static final long XK_Return = 0xff0d;
+    @SuppressWarnings("java:S115")
+    static final long XK_Escape = 0xff1b;
+    @SuppressWarnings("java:S115")
+    static final long XK_Home = 0xff50;
+    @SuppressWarnings("java:S115")
+    static final long XK_Left = 0xff51;
+    @SuppressWarnings("java:S115")
+    static final long XK_Right = 0xff53;
+    @SuppressWarnings("java:S115")
+    static final long XK_Down = 0xff54;
+    @SuppressWarnings("java:S115")
+    static final long XK_End = 0xff57;
+    @SuppressWarnings("java:S115")
+    static final long XK_Delete = 0xffff;
+    @SuppressWarnings("java:S115")
+    static final long XK_Control_L = 0xffe3;
+    @SuppressWarnings("java:S115")
+    static final long XK_Shift_L = 0xffe1;
+
+    private static final NativeLong NO_DELAY = new NativeLong(0);
+
+    private final Pacer pacer;
+    private final Pointer display;
+    private final int shiftKeycode;
+    private final KeysymTable keysymTable;
+    private final KeystrokeCompiler compiler;
+    private final KeyEventBatch batch = new KeyEventBatch();
+
+    public static class XTestInitializationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public XTestInitializationException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Registers this backend as {@code --xtest}. libX11 and libXtst are only loaded once it is created.
+     */
+    public static class Provider implements KeystrokeStrategyProvider {
+        @Override
+        public String name() {
+            return "xtest";
+        }
+
+        @Override
+        public String description() {
+            return "Use the X11 XTest extension directly (Linux).";
+        }
+
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout) {
+            return new XTestKeystroke(pacer);
+        }
+
+        /**
+         * @param target The X display to connect to, such as {@code :1}.
+         */
+        @Override
+        public KeystrokeStrategy create(Pacer pacer, KeyLayout layout, String target) {
+            return new XTestKeystroke(pacer, target);
+        }
+    }
+
+    public XTestKeystroke(Pacer pacer) {
+        this(pacer, null);
+    }
+
+    /**
+     * @param pacer       The pacer scheduling the characters.
+     * @param displayName The X display to connect to, or {@code null} for {@code DISPLAY}.
+     */
+    public XTestKeystroke(Pacer pacer, String displayName) {
+        this.pacer = pacer;
+        this.display = X11Library.INSTANCE.XOpenDisplay(displayName);
+        if (display == null) {
+            throw new XTestInitializationException("Cannot open X display " + (displayName != null ? displayName : System.getenv("DISPLAY")));
+        }
+        this.keysymTable = readKeyboardMapping(display);
+        this.shiftKeycode = Byte.toUnsignedInt(X11Library.INSTANCE.XKeysymToKeycode(display, new NativeLong(XK_Shift_L)));
+        this.compiler = new XTestCompiler();
+    }
+
+    /**
+     * Builds the keysym to keycode table from the server's keyboard mapping, packed like {@link KeyLayout}
+     * entries. Only the first two columns (plain and shifted) of each keycode are used; the plain column wins when
+     * a keysym appears in both.
+     */
+    private static KeysymTable readKeyboardMapping(Pointer display) {
+        IntByReference minKeycode = new IntByReference();
+        IntByReference maxKeycode = new IntByReference();
+        X11Library.INSTANCE.XDisplayKeycodes(display, minKeycode, maxKeycode);
+
+        int first = minKeycode.getValue();
+        int count = maxKeycode.getValue() - first + 1;
+        IntByReference keysymsPerKeycode = new IntByReference();
+        Pointer keysyms = X11Library.INSTANCE.XGetKeyboardMapping(display, (byte) first, count, keysymsPerKeycode);
+        if (keysyms == null) throw new XTestInitializationException("Cannot read the keyboard mapping");
+
+        int width = keysymsPerKeycode.getValue();
+        long[] mapped = new long[count * 2];
+        int[] entries = new int[count * 2];
+        int size = 0;
+        try {
+            for (int column = 0; column < Math.min(width, 2); column++) {
+                for (int i = 0; i < count; i++) {
+                    long keysym = keysyms.getNativeLong((long) (i * width + column) * Native.LONG_SIZE).longValue();
+                    if (keysym == 0) continue;
+                    mapped[size] = keysym;
+                    entries[size++] = (first + i) | (column == 1 ? KeyLayout.SHIFT : 0);
+                }
+            }
+        } finally {
+            X11Library.INSTANCE.XFree(keysyms);
+        }
+        return new KeysymTable(mapped, entries, size);
+    }
+
+    /**
+     * Maps a code point to its X keysym: Latin-1 characters map to themselves, a few control characters to their
+     * function keysyms, and everything else to the Unicode keysym range.
+     */
+    static long keysymForCodePoint(int codePoint) {
+        switch (codePoint) {
+            case '\n':
+                return XK_Return;
+            case '\t':
+                return XK_Tab;
+            case '\b':
+                return XK_BackSpace;
+            case 0x1b:
+                return XK_Escape;
+            default:
+                if ((codePoint >= 0x20 && codePoint <= 0x7e) || (codePoint >= 0xa0 && codePoint <= 0xff)) return codePoint;
+                return codePoint < 0x20 ? 0 : 0x01000000L | codePoint;
+        }
+    }
+
+    @Override
+    public KeystrokeCompiler compiler() {
+        return compiler;
+    }
+
+    @Override
+    public void replay(KeystrokePlan plan) {
+        try {
+            KeyEventBatch.replay(this, plan, pacer, batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            X11Library.INSTANCE.XFlush(display);
+        }
+    }
+
+    @Override
+    public void startJob() {
+        pacer.start();
+    }
+
+    @Override
+    public boolean hasFeedback() {
+        return true;
+    }
+
+    /**
+     * Measures an X server round trip, which grows when the server falls behind on the fake events.
+     */
+    @Override
+    public long syncNanos() {
+        long start = System.nanoTime();
+        X11Library.INSTANCE.XSync(display, false);
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public void dispatchEvent(int event) {
+        fakeKeyEvent(event);
+        X11Library.INSTANCE.XFlush(display);
+    }
+
+    /**
+     * Queues every event in the batch and flushes the connection once.
+     */
+    @Override
+    public void dispatch(KeyEventBatch events) {
+        for (int i = 0; i < events.size(); i++) {
+            fakeKeyEvent(events.event(i));
+        }
+        X11Library.INSTANCE.XFlush(display);
+    }
+
+    private void fakeKeyEvent(int event) {
+        boolean press = KeystrokePlan.op(event) == KeystrokePlan.OP_PRESS;
+        XTestLibrary.INSTANCE.XTestFakeKeyEvent(display, KeystrokePlan.operand(event), press, NO_DELAY);
+    }
+
+    @Override
+    public void close() {
+        X11Library.INSTANCE.XCloseDisplay(display);
+    }
+
+    /**
+     * Compiles characters into X keycodes using the table read from the server.
+     */
+    private class XTestCompiler extends KeystrokeCompiler {
+        XTestCompiler() {
+            super(false);
+        }
+
+        @Override
+        protected void compileCodePoint(int codePoint, KeystrokePlan.Builder builder) {
+            int entry = keysymTable.get(keysymForCodePoint(codePoint));
+            if (entry == KeyLayout.UNMAPPED) {
+                skipped(); // Not on the current keyboard mapping
+                return;
+            }
+
+            typeKey(entry, builder);
+        }
+
+        @Override
+        protected int shiftKeyCode() {
+            return shiftKeycode;
+        }
+
+        /**
+         * Keycodes are specific to the server's keyboard mapping, so macros record a fingerprint of it.
+         */
+        @Override
+        public String keymap() {
+            return Long.toHexString(keysymTable.fingerprint());
+        }
+
+        @Override
+        protected int keyCodeFor(int awtKeyCode) {
+            long keysym;
+            switch (awtKeyCode) {
+                case KeyEvent.VK_SHIFT:
+                    return shiftKeycode;
+                case KeyEvent.VK_CONTROL:
+                    keysym = XK_Control_L;
+                    break;
+                case KeyEvent.VK_HOME:
+                    keysym = XK_Home;
+                    break;
+                case KeyEvent.VK_LEFT:
+                    keysym = XK_Left;
+                    break;
+                case KeyEvent.VK_RIGHT:
+                    keysym = XK_Right;
+                    break;
+                case KeyEvent.VK_DOWN:
+                    keysym = XK_Down;
+                    break;
+                case KeyEvent.VK_END:
+                    keysym = XK_End;
+                    break;
+                case KeyEvent.VK_DELETE:
+                    keysym = XK_Delete;
+                    break;
+                case KeyEvent.VK_V:
+                    keysym = 'v'; // The key typing v on the server's layout, as the paste shortcut expects
+                    break;
+                default:
+                    return -1;
+            }
+            int entry = keysymTable.get(keysym);
+            return entry != KeyLayout.UNMAPPED && (entry & KeyLayout.MODIFIERS) == 0 ? entry : -1;
+        }
+    }
+
+    /**
+     * Keysym to packed entry table, sorted by keysym and searched with a binary search, so looking up a character
+     * while compiling allocates nothing.
+     */
+    static final class KeysymTable {
+        private static final int ORDER_BITS = 20;
+
+        private final long[] keysyms;
+        private final int[] entries;
+
+        /**
+         * @param keysyms The keysyms, which must be below 2<sup>43</sup>, as all X keysyms are.
+         * @param entries The packed entry of each keysym. When a keysym appears more than once, its first entry wins.
+         * @param size    The number of keysyms and entries used.
+         */
+        KeysymTable(long[] keysyms, int[] entries, int size) {
+            if (size >= 1 << ORDER_BITS) throw new IllegalArgumentException("Too many keysyms: " + size);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = keysyms[i] << ORDER_BITS | i; // Ties sort in their original order
+            }
+            Arrays.sort(sorted);
+            long[] uniqueKeysyms = new long[size];
+            int[] uniqueEntries = new int[size];
+            int unique = 0;
+            for (long packed : sorted) {
+                long keysym = packed >>> ORDER_BITS;
+                if (unique > 0 && uniqueKeysyms[unique - 1] == keysym) continue;
+                uniqueKeysyms[unique] = keysym;
+                uniqueEntries[unique++] = entries[(int) (packed & ((1 << ORDER_BITS) - 1))];
+            }
+            this.keysyms = Arrays.copyOf(uniqueKeysyms, unique);
+            this.entries = Arrays.copyOf(uniqueEntries, unique);
+        }
+
+        /**
+         * @return The packed entry for the keysym, or {@link KeyLayout#UNMAPPED}.
+         */
+        int get(long keysym) {
+            int index = Arrays.binarySearch(keysyms, keysym);
+            return index >= 0 ? entries[index] : KeyLayout.UNMAPPED;
+        }
+
+        /**
+         * @return A 64-bit FNV-1a hash of the keysyms and their entries, equal for equal keyboard mappings.
+         */
+        long fingerprint() {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < keysyms.length; i++) {
+                hash = (hash ^ keysyms[i]) * 0x100000001b3L;
+                hash = (hash ^ entries[i]) * 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        int size() {
+            return keysyms.length;
+        }
+    }
+
+    /**
+     * Interface for Xlib functions.
+     */
+    @SuppressWarnings("java:S100")
+    public interface X11Library extends Library {
+        X11Library INSTANCE = Native.load("X11", X11Library.class);
+
+        /**
+         * Opens a connection to an X server.
+         *
+         * @param displayName The display name, or null for the DISPLAY environment variable.
+         * @return A pointer to the display, or null on failure.
+         */
+        Pointer XOpenDisplay(String displayName);
+
+        /**
+         * Closes a connection to an X server.
+         *
+         * @param display The display.
+         */
+        int XCloseDisplay(Pointer display);
+
+        /**
+         * Returns the range of keycodes supported by the server.
+         *
+         * @param display    The display.
+         * @param minKeycode Receives the lowest keycode.
+         * @param maxKeycode Receives the highest keycode.
+         */
+        int XDisplayKeycodes(Pointer display, IntByReference minKeycode, IntByReference maxKeycode);
+
+        /**
+         * Returns the keysyms for a range of keycodes.
+         *
+         * @param display           The display.
+         * @param firstKeycode      The first keycode.
+         * @param keycodeCount      The number of keycodes.
+         * @param keysymsPerKeycode Receives the number of keysyms per keycode.
+         * @return A pointer to the keysyms, to be released with XFree.
+         */
+        Pointer XGetKeyboardMapping(Pointer display, byte firstKeycode, int keycodeCount, IntByReference keysymsPerKeycode);
+
+        /**
+         * Returns the keycode for a keysym.
+         *
+         * @param display The display.
+         * @param keysym  The keysym.
+         * @return The keycode, or 0 if the keysym is not mapped.
+         */
+        byte XKeysymToKeycode(Pointer display, NativeLong keysym);
+
+        /**
+         * Sends all queued requests to the server without waiting for them to be processed.
+         *
+         * @param display The display.
+         */
+        int XFlush(Pointer display);
+
+        /**
+         * Flushes the queued requests and waits until the server has processed all of them.
+         *
+         * @param display The display.
+         * @param discard True to discard the events waiting in the input queue.
+         */
+        int XSync(Pointer display, boolean discard);
+
+        /**
+         * Frees memory allocated by Xlib.
+         *
+         * @param data The memory to free.
+         */
+        int XFree(Pointer data);
+    }
+
+    /**
+     * Interface for XTest extension functions.
+     */
+    @SuppressWarnings("java:S100")
+    public interface XTestLibrary extends Library {
+        XTestLibrary INSTANCE = Native.load("Xtst", XTestLibrary.class);
+
+        /**
+         * Queues a fake key event.
+         *
+         * @param display The display.
+         * @param keycode The keycode.
+         * @param isPress True for a press, false for a release.
+         * @param delay   Milliseconds the server waits before processing the event.
+         */
+        int XTestFakeKeyEvent(Pointer display, int keycode, boolean isPress, NativeLong delay);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time to first keystroke: from launching a fresh JVM until its first key event has been sent.
+ * <p>
+ * Each run starts a child JVM on this class path in probe mode, which looks up the backend through the registry,
+ * initializes it and types a single space, then reports back. Runs are repeated with and without an AppCDS archive
+ * when one is given. The archive is recorded from the fat jar alone, so the fat jar must come first on the class
+ * path for it to apply. The keystroke goes to the focused window, so run it under Xvfb or with a scratch window
+ * focused. It lives in its own source set so it never ships in the fat jar.
+ * <p>
+ * Usage: {@code StartupBenchmark [--runs <n>] [--archive <file.jsa>] --robot|--jna|--xtest}
+ */
+public class StartupBenchmark {
+
+    private static final String ARG_PROBE = "--probe";
+    private static final String ARG_RUNS = "--runs";
+    private static final String ARG_ARCHIVE = "--archive";
+    private static final String FIRST_KEYSTROKE = "first-keystroke";
+    private static final int DEFAULT_RUNS = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (Arrays.asList(args).contains(ARG_PROBE)) {
+            probe(args);
+            return;
+        }
+
+        int runs = DEFAULT_RUNS;
+        String archive = null;
+        String backend = null;
+        for (int i = 0; i < args.length; i++) {
+            if (ARG_RUNS.equals(args[i]) && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (ARG_ARCHIVE.equals(args[i]) && i + 1 < args.length) {
+                archive = args[++i];
+            } else {
+                backend = args[i];
+            }
+        }
+        if (backend == null) throw new IllegalArgumentException("Specify a backend, for example --robot.");
+
+        report("default CDS", measure(backend, runs, null));
+        if (archive != null) {
+            if (!Files.exists(Paths.get(archive))) throw new IllegalArgumentException("No archive at " + archive);
+            report("AppCDS", measure(backend, runs, archive));
+        }
+    }
+
+    /**
+     * Child JVM: initializes the backend, types one space and reports once it has been sent.
+     */
+    private static void probe(String[] args) {
+        KeystrokeStrategyProvider provider = null;
+        for (String arg : args) {
+            if (arg.startsWith("--") && !ARG_PROBE.equals(arg)) provider = KeystrokeStrategies.find(arg.substring(2));
+        }
+        if (provider == null) {
+            System.err.println("Unknown backend: " + String.join(" ", args));
+            System.exit(1);
+        }
+        KeystrokeStrategy strategy = provider.create(Pacer.unpaced(), KeyLayout.US);
+        strategy.simulateTyping(" ");
+        System.out.println(FIRST_KEYSTROKE);
+    }
+
+    private static long[] measure(String backend, int runs, String archive) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (archive != null) command.add("-XX:SharedArchiveFile=" + archive);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), StartupBenchmark.class.getName(), ARG_PROBE, backend));
+
+        long[] nanos = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null && !FIRST_KEYSTROKE.equals(line)) {
+                    // Skip anything else the probe prints
+                }
+                nanos[run] = System.nanoTime() - start;
+                if (line == null) throw new IllegalStateException("Probe exited with " + process.waitFor() + " before typing");
+            }
+            process.waitFor();
+        }
+        return nanos;
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-12s runs: %d, time to first keystroke: min %d ms, median %d ms, max %d ms%n",
+                label, sorted.length, millis(sorted[0]), millis(sorted[sorted.length / 2]), millis(sorted[sorted.length - 1]));
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
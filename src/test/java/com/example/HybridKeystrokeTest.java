@@ -0,0 +1,89 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HybridKeystrokeTest {
+
+    private static final String LONG_RUN = "The quick brown fox jumps";
+
+    @Test
+    void pressesThePasteShortcutThroughTheWrappedBackend() throws Exception {
+        Recording keys = new Recording(KeystrokeCompiler.KEY_CODES);
+        Clipboard clipboard = new Clipboard("test");
+        HybridKeystroke hybrid = new HybridKeystroke(keys, Pacer.unpaced(), HybridKeystroke.DEFAULT_CHUNK_SIZE, false, clipboard);
+
+        hybrid.simulateTyping(LONG_RUN);
+
+        int modifier = System.getProperty("os.name").startsWith("Mac") ? KeyEvent.VK_META : KeyEvent.VK_CONTROL;
+        assertEquals(List.of(
+                KeystrokePlan.OP_PRESS | modifier, KeystrokePlan.OP_PRESS | KeyEvent.VK_V,
+                KeystrokePlan.OP_RELEASE | KeyEvent.VK_V, KeystrokePlan.OP_RELEASE | modifier), keys.events);
+        assertEquals(LONG_RUN, clipboard.getData(DataFlavor.stringFlavor));
+    }
+
+    @Test
+    void rejectsBackendsThatCannotPressTheShortcut() {
+        Recording keys = new Recording(KeystrokeCompiler.UNICODE);
+        assertThrows(IllegalArgumentException.class,
+                () -> new HybridKeystroke(keys, Pacer.unpaced(), HybridKeystroke.DEFAULT_CHUNK_SIZE, false, new Clipboard("test")));
+    }
+
+    @Test
+    void pastesIntoXvfb() throws Exception {
+        assumeTrue(Xvfb.isInstalled(), "Xvfb is not installed");
+        try (Xvfb xvfb = Xvfb.start(); XTestKeystroke keys = new XTestKeystroke(Pacer.unpaced(), xvfb.display())) {
+            assertTrue(keys.compiler().keyCodeFor(KeyEvent.VK_V) > 0, "The server's layout has a v key");
+            Clipboard clipboard = new Clipboard("test");
+            HybridKeystroke hybrid = new HybridKeystroke(keys, Pacer.unpaced(), HybridKeystroke.DEFAULT_CHUNK_SIZE, false, clipboard);
+
+            hybrid.simulateTyping("\t" + LONG_RUN + "\n");
+
+            assertEquals(LONG_RUN + "\n", clipboard.getData(DataFlavor.stringFlavor));
+            assertTrue(keys.syncNanos() >= 0, "The server processed the events");
+        }
+    }
+
+    /**
+     * Records the events posted one at a time, which are the paste shortcut's.
+     */
+    private static final class Recording implements KeystrokeStrategy {
+
+        private final KeystrokeCompiler compiler;
+        private final List<Integer> events = new ArrayList<>();
+
+        Recording(KeystrokeCompiler compiler) {
+            this.compiler = compiler;
+        }
+
+        @Override
+        public KeystrokeCompiler compiler() {
+            return compiler;
+        }
+
+        @Override
+        public void replay(KeystrokePlan plan) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatchEvent(int event) {
+            events.add(event);
+        }
+
+        @Override
+        public void dispatch(KeyEventBatch batch) {
+            // Typed keys are not recorded
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.example;
+
+import java.awt.Canvas;
+import java.awt.EventQueue;
+import java.awt.Frame;
+import java.awt.Point;
+import java.awt.Robot;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures inject-to-receive latency of the backends end to end, on a private Xvfb server.
+ * <p>
+ * The harness starts Xvfb on a free display, unless one is given, and runs one child JVM per backend on it. It lives
+ * with the tests, which provide the {@link Xvfb} server, so it is not shipped in the fat jar. The child
+ * opens a small AWT window that timestamps every {@code KEY_TYPED} event it receives, then types a sample text into
+ * it at each of a series of rates, timestamping every character as it is handed to the backend. Both timestamps
+ * come from the same {@link System#nanoTime()} clock. Received characters are matched to sent ones in order, so a
+ * character that never arrives counts as dropped and one that arrives as another character as garbled. For each rate
+ * it reports p50, p99 and p99.9 latency, drops and the achieved rate, and finally the highest rate sustained without
+ * drops, with a p99 under {@link #SUSTAINABLE_P99_MILLIS} and at least 90% of the target rate. It exits with a non-zero
+ * status when a backend fails or sustains none of the rates, so it can gate a build.
+ * <p>
+ * Xvfb has no kernel input devices, so {@code --uinput} cannot reach it; use Robot and XTest here.
+ * <p>
+ * Usage: {@code InjectionLatencyHarness [--characters <n>] [--rates <cps,...>] [--display <:n>] --robot|--xtest ...}
+ */
+public class InjectionLatencyHarness {
+
+    private static final String ARG_CAPTURE = "--capture";
+    private static final String ARG_CHARACTERS = "--characters";
+    private static final String ARG_RATES = "--rates";
+    private static final String ARG_DISPLAY = "--display";
+    private static final int DEFAULT_CHARACTERS = 2000;
+    private static final String DEFAULT_RATES = "100,200,400,800,1600,3200";
+    private static final String SAMPLE = "HelloBase64Test+/=abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    /**
+     * Highest p99 latency at which a rate still counts as sustained.
+     */
+    static final long SUSTAINABLE_P99_MILLIS = 50;
+    /**
+     * How long the capture window must stay quiet before a run is considered finished.
+     */
+    static final long SETTLE_MILLIS = 500;
+    /**
+     * How far ahead a received character is looked for among the sent ones, to tell drops from garbled characters.
+     */
+    static final int MATCH_LOOKAHEAD = 8;
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains(ARG_CAPTURE)) {
+            capture(args);
+            return;
+        }
+
+        String display = null;
+        List<String> options = new ArrayList<>();
+        List<String> backends = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (ARG_DISPLAY.equals(args[i]) && i + 1 < args.length) {
+                display = args[++i];
+            } else if ((ARG_CHARACTERS.equals(args[i]) || ARG_RATES.equals(args[i])) && i + 1 < args.length) {
+                options.addAll(List.of(args[i], args[++i]));
+            } else {
+                backends.add(args[i]);
+            }
+        }
+        if (backends.isEmpty()) throw new IllegalArgumentException("Specify one or more backends, for example --robot --xtest.");
+
+        if (display == null && !Xvfb.isInstalled()) {
+            throw new IllegalStateException("Xvfb is not installed. Install it, or give the --display of a running X server.");
+        }
+        Xvfb xvfb = null;
+        List<String> failed = new ArrayList<>();
+        try {
+            if (display == null) {
+                xvfb = Xvfb.start();
+                display = xvfb.display();
+            }
+            for (String backend : backends) {
+                System.out.println("Backend " + backend + " on display " + display);
+                List<String> command = new ArrayList<>(List.of(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", System.getProperty("java.class.path"), InjectionLatencyHarness.class.getName(), ARG_CAPTURE, backend));
+                command.addAll(options);
+                ProcessBuilder child = new ProcessBuilder(command).inheritIO();
+                child.environment().put("DISPLAY", display);
+                int status = child.start().waitFor();
+                if (status != 0) {
+                    System.err.println("Backend " + backend + " failed with exit status " + status);
+                    failed.add(backend);
+                }
+            }
+        } finally {
+            if (xvfb != null) xvfb.close();
+        }
+        if (!failed.isEmpty()) {
+            System.err.println("Failed: " + String.join(" ", failed));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Child JVM: types the sample into a capture window at each rate and reports the latencies.
+     */
+    private static void capture(String[] args) throws Exception {
+        KeystrokeStrategyProvider provider = null;
+        int characters = DEFAULT_CHARACTERS;
+        String rates = DEFAULT_RATES;
+        for (int i = 0; i < args.length; i++) {
+            if (ARG_CHARACTERS.equals(args[i]) && i + 1 < args.length) {
+                characters = Integer.parseInt(args[++i]);
+            } else if (ARG_RATES.equals(args[i]) && i + 1 < args.length) {
+                rates = args[++i];
+            } else if (args[i].startsWith("--") && !ARG_CAPTURE.equals(args[i])) {
+                provider = KeystrokeStrategies.find(args[i].substring(2));
+            }
+        }
+        if (provider == null) {
+            System.err.println("Unknown backend: " + String.join(" ", args));
+            System.exit(1);
+        }
+
+        CaptureWindow window = CaptureWindow.open();
+        KeystrokeStrategy target = provider.create(Pacer.unpaced(), KeyLayout.US, null);
+        String text = SAMPLE.repeat(characters / SAMPLE.length() + 1).substring(0, characters);
+        run(target, window, text.substring(0, Math.min(text.length(), 100)), Pacer.unpaced()); // Warm up
+
+        System.out.printf("%10s %10s %10s %10s %10s %8s %8s %12s%n",
+                "rate (cps)", "received", "p50 (us)", "p99 (us)", "p99.9 (us)", "dropped", "garbled", "achieved cps");
+        double sustainable = 0;
+        for (String rate : rates.split(",")) {
+            double cps = Double.parseDouble(rate.strip());
+            Result result = run(target, window, text, Pacer.ofRate(cps));
+            LatencyHistogram latency = result.latency();
+            System.out.printf("%10.0f %10d %10.1f %10.1f %10.1f %8d %8d %12.1f%n", cps, latency.count(),
+                    micros(latency.percentile(50)), micros(latency.percentile(99)), micros(latency.percentile(99.9)),
+                    result.dropped(), result.garbled(), result.achievedRate());
+            if (result.dropped() == 0 && result.garbled() == 0 && result.achievedRate() >= 0.9 * cps
+                    && latency.percentile(99) <= TimeUnit.MILLISECONDS.toNanos(SUSTAINABLE_P99_MILLIS)) {
+                sustainable = Math.max(sustainable, cps);
+            }
+        }
+        System.out.printf("Max sustainable rate: %.0f cps%n", sustainable);
+
+        if (target instanceof AutoCloseable closeable) closeable.close();
+        window.close();
+        System.exit(sustainable > 0 ? 0 : 2); // The AWT threads would keep the JVM alive
+    }
+
+    private record Result(LatencyHistogram latency, int dropped, int garbled, double achievedRate) {
+    }
+
+    /**
+     * Types the text once and matches what the window received against what was sent.
+     */
+    private static Result run(KeystrokeStrategy target, CaptureWindow window, String text, Pacer pacer)
+            throws InterruptedException, InvocationTargetException {
+        window.reset(2 * text.length());
+        Timestamping timestamping = new Timestamping(target, pacer, text.length());
+        timestamping.replay(target.compile(text));
+        window.awaitQuiet(text.length());
+
+        char[] received = window.characters();
+        long[] receivedNanos = window.nanos();
+        LatencyHistogram latency = new LatencyHistogram("latency");
+        int dropped = 0;
+        int garbled = 0;
+        int j = 0;
+        for (int i = 0; i < text.length() && i < timestamping.sent; i++) {
+            if (j == received.length) {
+                dropped++;
+                continue;
+            }
+            int found = i;
+            while (found < Math.min(text.length(), i + MATCH_LOOKAHEAD) && text.charAt(found) != received[j]) found++;
+            if (found == Math.min(text.length(), i + MATCH_LOOKAHEAD)) { // Arrived, but not as any character sent around it
+                garbled++;
+                j++;
+                continue;
+            }
+            dropped += found - i;
+            i = found;
+            latency.record(receivedNanos[j++] - timestamping.sentNanos[i]);
+        }
+        return new Result(latency, dropped, garbled, pacer.achievedRate());
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    /**
+     * Replays through the backend at the pacer's rate and timestamps each character just before it is posted.
+     */
+    private static final class Timestamping implements KeystrokeStrategy {
+        private final KeystrokeStrategy target;
+        private final Pacer pacer;
+        private final KeyEventBatch batch = new KeyEventBatch();
+        final long[] sentNanos;
+        int sent;
+
+        Timestamping(KeystrokeStrategy target, Pacer pacer, int characters) {
+            this.target = target;
+            this.pacer = pacer;
+            this.sentNanos = new long[characters];
+        }
+
+        @Override
+        public KeystrokeCompiler compiler() {
+            return target.compiler();
+        }
+
+        @Override
+        public void replay(KeystrokePlan plan) {
+            try {
+                KeyEventBatch.replay(this, plan, pacer, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void dispatchEvent(int event) {
+            target.dispatchEvent(event);
+        }
+
+        @Override
+        public void dispatch(KeyEventBatch events) {
+            long now = System.nanoTime();
+            target.dispatch(events);
+            for (int i = 0; i < events.size(); i++) {
+                if (KeystrokePlan.endsCharacter(events.event(i)) && sent < sentNanos.length) sentNanos[sent++] = now;
+            }
+        }
+    }
+
+    /**
+     * A focused window recording the character and arrival time of every key typed into it.
+     */
+    private static final class CaptureWindow extends KeyAdapter {
+        private final Frame frame = new Frame("Injection latency");
+        private final Canvas canvas = new Canvas();
+        private char[] characters = new char[0]; // Written on the event dispatch thread only
+        private long[] nanos = new long[0];
+        private int received;
+        private volatile long lastReceivedNanos;
+
+        static CaptureWindow open() throws Exception {
+            CaptureWindow window = new CaptureWindow();
+            CountDownLatch focused = new CountDownLatch(1);
+            EventQueue.invokeAndWait(() -> {
+                window.canvas.setFocusable(true);
+                window.canvas.addKeyListener(window);
+                window.canvas.addFocusListener(new FocusAdapter() {
+                    @Override
+                    public void focusGained(FocusEvent e) {
+                        focused.countDown();
+                    }
+                });
+                window.frame.add(window.canvas);
+                window.frame.setBounds(100, 100, 400, 200);
+                window.frame.setVisible(true);
+                window.frame.toFront();
+                window.canvas.requestFocus();
+            });
+            // Without a window manager the pointer decides the focus, so click into the window as well
+            Robot robot = new Robot();
+            robot.waitForIdle();
+            Point center = window.canvas.getLocationOnScreen();
+            robot.mouseMove(center.x + window.canvas.getWidth() / 2, center.y + window.canvas.getHeight() / 2);
+            robot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
+            robot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
+            if (!focused.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("The capture window did not get the focus");
+            return window;
+        }
+
+        @Override
+        public void keyTyped(KeyEvent e) {
+            long now = System.nanoTime();
+            if (received < characters.length) {
+                characters[received] = e.getKeyChar();
+                nanos[received++] = now;
+            }
+            lastReceivedNanos = now;
+        }
+
+        void reset(int capacity) throws InterruptedException, InvocationTargetException {
+            EventQueue.invokeAndWait(() -> {
+                characters = new char[capacity];
+                nanos = new long[capacity];
+                received = 0;
+            });
+            lastReceivedNanos = System.nanoTime();
+        }
+
+        /**
+         * Waits until the expected number of characters arrived, or nothing arrived for {@link #SETTLE_MILLIS}.
+         */
+        void awaitQuiet(int expected) throws InterruptedException, InvocationTargetException {
+            long settle = TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+            while (System.nanoTime() - lastReceivedNanos < settle) {
+                int[] count = new int[1];
+                EventQueue.invokeAndWait(() -> count[0] = received);
+                if (count[0] >= expected) {
+                    Thread.sleep(SETTLE_MILLIS / 5); // Give stray extra characters a moment to show up
+                    return;
+                }
+                Thread.sleep(10);
+            }
+        }
+
+        char[] characters() throws InterruptedException, InvocationTargetException {
+            char[][] copy = new char[1][];
+            EventQueue.invokeAndWait(() -> copy[0] = Arrays.copyOf(characters, received));
+            return copy[0];
+        }
+
+        long[] nanos() throws InterruptedException, InvocationTargetException {
+            long[][] copy = new long[1][];
+            EventQueue.invokeAndWait(() -> copy[0] = Arrays.copyOf(nanos, received));
+            return copy[0];
+        }
+
+        void close() throws InterruptedException, InvocationTargetException {
+            EventQueue.invokeAndWait(frame::dispose);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class KeyLayoutTest {
+
+    @Test
+    void positionalLayoutNamesKeysByTheirUsPosition() {
+        KeyLayout german = KeyLayout.forName("de");
+        assertEquals(KeyEvent.VK_Y, german.lookup('z'));
+        assertEquals(KeyEvent.VK_Z | KeyLayout.SHIFT, german.lookup('Y'));
+        assertEquals(KeyEvent.VK_MINUS, german.lookup('ß'));
+        assertEquals(KeyEvent.VK_Q | KeyLayout.ALT_GRAPH, german.lookup('@'));
+    }
+
+    @Test
+    void symbolicLayoutNamesKeysByTheirCharacter() {
+        KeyLayout german = KeyLayout.forName("de").symbolic();
+        assertEquals(KeyEvent.VK_Z, german.lookup('z'));
+        assertEquals(KeyEvent.VK_Y | KeyLayout.SHIFT, german.lookup('Y'));
+        assertEquals(KeyEvent.getExtendedKeyCodeForChar('ß'), german.lookup('ß'));
+        assertEquals(KeyEvent.getExtendedKeyCodeForChar('ß') | KeyLayout.SHIFT, german.lookup('?'));
+        assertEquals(KeyEvent.VK_Q | KeyLayout.ALT_GRAPH, german.lookup('@'));
+        assertSame(german, german.symbolic());
+    }
+
+    @Test
+    void usLayoutIsTheSameEitherWay() {
+        KeyLayout us = KeyLayout.US;
+        for (char c = ' '; c < 0x7f; c++) {
+            assertEquals(us.lookup(c), us.symbolic().lookup(c), "Character " + c);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeystrokeCompilerTest {
+
+    @Test
+    void typesEveryKindOfLineBreakAsOneEnter() {
+        for (KeystrokeCompiler compiler : List.of(KeystrokeCompiler.KEY_CODES, KeystrokeCompiler.UNICODE)) {
+            List<Integer> expected = events(compiler.compile("a\nb\nc\n\nd"));
+            assertEquals(expected, events(compiler.compile("a\r\nb\rc\n\r\nd")));
+        }
+    }
+
+    @Test
+    void typesCrlfAsOneEnterWhereverTheChunkEnds() {
+        String text = "a\r\nb\r\rc\r";
+        for (KeystrokeCompiler compiler : List.of(KeystrokeCompiler.KEY_CODES, KeystrokeCompiler.UNICODE)) {
+            List<Integer> whole = events(compiler.compile(text));
+            for (int split = 1; split < text.length(); split++) {
+                KeystrokePlan.Builder builder = new KeystrokePlan.Builder(64);
+                compiler.compile(text, 0, split, builder);
+                compiler.finish(builder);
+                List<Integer> events = new ArrayList<>(events(builder.build()));
+                builder.clear();
+                compiler.compile(text, split, text.length(), builder);
+                compiler.finish(builder);
+                events.addAll(events(builder.build()));
+                assertEquals(whole, events, "Split at " + split);
+            }
+        }
+    }
+
+    private static List<Integer> events(KeystrokePlan plan) {
+        return Arrays.stream(plan.events()).boxed().toList();
+    }
+}
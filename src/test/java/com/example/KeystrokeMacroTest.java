@@ -0,0 +1,110 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeystrokeMacroTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysTheCompiledEvents() throws IOException {
+        KeystrokePlan plan = KeystrokeCompiler.KEY_CODES.compile("Hello, World!\n");
+        Path file = write(plan, "0123abcd", 1_000_000);
+
+        KeystrokeMacro macro = map(file);
+        assertEquals("robot", macro.backend());
+        assertEquals("us", macro.layout());
+        assertEquals("0123abcd", macro.keymap());
+        assertTrue(macro.hasTimestamps());
+
+        List<Integer> replayed = new ArrayList<>();
+        macro.replay(recorder(replayed), Pacer.unpaced());
+        assertEquals(Arrays.stream(plan.events()).boxed().toList(), replayed);
+    }
+
+    @Test
+    void rejectsTruncatedFilesBeforeTyping() throws IOException {
+        Path file = write(KeystrokeCompiler.KEY_CODES.compile("Hello, World!\n"), "", 1_000_000);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1)); // Cuts off the last timestamp
+
+        IOException e = assertThrows(IOException.class, () -> map(file));
+        assertTrue(e.getMessage().startsWith("Truncated keystroke macro"), e.getMessage());
+    }
+
+    @Test
+    void rejectsOverlongVarints() throws IOException {
+        Path file = write(KeystrokePlan.empty(), "", -1);
+        Files.write(file, new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0}, StandardOpenOption.APPEND);
+
+        IOException e = assertThrows(IOException.class, () -> map(file));
+        assertTrue(e.getMessage().startsWith("Corrupt keystroke macro"), e.getMessage());
+    }
+
+    @Test
+    void rejectsHeaderStringsLongerThanTheFile() throws IOException {
+        Path file = directory.resolve("corrupt.ksm");
+        Files.write(file, new byte[]{'K', 'S', 'M', 1, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 'r'});
+
+        IOException e = assertThrows(IOException.class, () -> map(file));
+        assertTrue(e.getMessage().startsWith("Truncated keystroke macro header"), e.getMessage());
+    }
+
+    @Test
+    void readsVersionOneFilesWithAnEmptyKeymap() throws IOException {
+        Path file = directory.resolve("v1.ksm");
+        Files.write(file, new byte[]{'K', 'S', 'M', 1, 0, 5, 'r', 'o', 'b', 'o', 't', 2, 'u', 's'});
+
+        KeystrokeMacro macro = map(file);
+        assertEquals("robot", macro.backend());
+        assertEquals("us", macro.layout());
+        assertEquals("", macro.keymap());
+    }
+
+    private Path write(KeystrokePlan plan, String keymap, long intervalNanos) throws IOException {
+        Path file = directory.resolve("macro.ksm");
+        try (KeystrokeMacro.Writer writer = new KeystrokeMacro.Writer(
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                "robot", "us", keymap, intervalNanos)) {
+            writer.write(plan);
+        }
+        return file;
+    }
+
+    private static KeystrokeMacro map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return KeystrokeMacro.map(channel);
+        }
+    }
+
+    private static KeystrokeStrategy recorder(List<Integer> events) {
+        return new KeystrokeStrategy() {
+            @Override
+            public void replay(KeystrokePlan plan) {
+                for (int event : plan.events()) {
+                    events.add(event);
+                }
+            }
+
+            @Override
+            public void dispatchEvent(int event) {
+                events.add(event);
+            }
+        };
+    }
+}
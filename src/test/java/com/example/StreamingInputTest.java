@@ -0,0 +1,55 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingInputTest {
+
+    @Test
+    void keepsSurrogatePairsTogetherAcrossReads() throws IOException {
+        String text = "a😀b😀😀c\uD83D"; // Ends on a lone high surrogate
+        for (int readSize = 1; readSize <= 4; readSize++) {
+            List<Integer> codePoints = new ArrayList<>();
+            KeystrokeCompiler compiler = new KeystrokeCompiler(KeyLayout.US) {
+                @Override
+                protected void compileCodePoint(int codePoint, KeystrokePlan.Builder builder) {
+                    codePoints.add(codePoint);
+                }
+            };
+            StreamingInput.plan(compiler, new TrickleReader(text, readSize), plan -> {
+            });
+            assertEquals(text.codePoints().boxed().toList(), codePoints, "Read size " + readSize);
+        }
+    }
+
+    /**
+     * Returns at most a few characters per read, as a pipe or a socket may.
+     */
+    private static final class TrickleReader extends Reader {
+
+        private final Reader text;
+        private final int readSize;
+
+        TrickleReader(String text, int readSize) {
+            this.text = new StringReader(text);
+            this.readSize = readSize;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return text.read(buffer, offset, Math.min(length, readSize));
+        }
+
+        @Override
+        public void close() throws IOException {
+            text.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransformingKeystrokeTest {
+
+    private static final String BLOCK = "if (ready) {\r\n    start();\r\n}\r\n";
+
+    @Test
+    void compilesChunksLikeTheWholeText() {
+        for (String spec : List.of("vscode", "collapse-tabs=4", "expand-tabs=4,crlf")) {
+            TransformingKeystroke.Options options = TransformingKeystroke.Options.parse(spec);
+            List<Integer> whole = events(TransformingKeystroke.compiler(KeystrokeCompiler.KEY_CODES, options).compile(BLOCK));
+            for (int split = 1; split < BLOCK.length(); split++) {
+                KeystrokeCompiler compiler = TransformingKeystroke.compiler(KeystrokeCompiler.KEY_CODES, options);
+                KeystrokePlan.Builder builder = new KeystrokePlan.Builder(64);
+                compiler.compile(BLOCK, 0, split, builder);
+                compiler.compile(BLOCK, split, BLOCK.length(), builder);
+                compiler.end(builder);
+                compiler.finish(builder);
+                assertEquals(whole, events(builder.build()), spec + " split at " + split);
+            }
+        }
+    }
+
+    @Test
+    void keepsTheClosingLineOfABlockUntilTheEndOfInput() {
+        KeystrokeCompiler compiler = TransformingKeystroke.compiler(KeystrokeCompiler.KEY_CODES, TransformingKeystroke.Options.parse("vscode"));
+        assertEquals(events(KeystrokeCompiler.KEY_CODES.compile("f() {\nx();\n")), events(compiler.compile("f() {\n    x();\n  ")));
+    }
+
+    @Test
+    void startsEachJobAfresh() {
+        KeystrokeCompiler compiler = TransformingKeystroke.compiler(KeystrokeCompiler.KEY_CODES, TransformingKeystroke.Options.parse("vscode"));
+        KeystrokePlan.Builder builder = new KeystrokePlan.Builder(64);
+        compiler.compile("f() {\n", 0, 6, builder); // Leaves the block open, as a cancelled job would
+        compiler.reset();
+
+        assertEquals(events(KeystrokeCompiler.KEY_CODES.compile("\n}")), events(compiler.compile("\n}")));
+    }
+
+    private static List<Integer> events(KeystrokePlan plan) {
+        return Arrays.stream(plan.events()).boxed().toList();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TypingCheckpointTest {
+
+    private static final String TEXT = "aé€😀b\r\nc";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumesAfterMultiByteCharacters() throws IOException {
+        assertResumesAt(TEXT, 3, 3, 6);
+        assertResumesAt(TEXT, 5, 5, 10);
+    }
+
+    @Test
+    void typesAHalfTypedSurrogatePairAgain() throws IOException {
+        assertResumesAt(TEXT, 4, 3, 6);
+    }
+
+    @Test
+    void skipsTheLineFeedTypedWithItsCarriageReturn() throws IOException {
+        assertResumesAt(TEXT, 6, 6, 11);
+        assertResumesAt(TEXT, 7, 8, 13);
+    }
+
+    @Test
+    void countsALoneCarriageReturn() throws IOException {
+        assertResumesAt("a\rb\r\nc", 2, 2, 2);
+        assertResumesAt("a\rb\r\nc", 4, 5, 5);
+    }
+
+    @Test
+    void resumesAfterACarriageReturnEndingAChunk() throws IOException {
+        String text = "x".repeat(TypingCheckpoint.CHUNK_SIZE - 1) + "\r\ny";
+        assertResumesAt(text, TypingCheckpoint.CHUNK_SIZE, TypingCheckpoint.CHUNK_SIZE + 1, TypingCheckpoint.CHUNK_SIZE + 1);
+    }
+
+    @Test
+    void resumesAcrossChunks() throws IOException {
+        String text = "é".repeat(TypingCheckpoint.CHUNK_SIZE - 1) + "😀x"; // The pair does not fit in the first chunk
+        assertResumesAt(text, TypingCheckpoint.CHUNK_SIZE - 1, TypingCheckpoint.CHUNK_SIZE - 1, 2 * (TypingCheckpoint.CHUNK_SIZE - 1));
+        assertResumesAt(text, TypingCheckpoint.CHUNK_SIZE, TypingCheckpoint.CHUNK_SIZE - 1, 2 * (TypingCheckpoint.CHUNK_SIZE - 1));
+        assertResumesAt(text, TypingCheckpoint.CHUNK_SIZE + 1, TypingCheckpoint.CHUNK_SIZE + 1, 2 * (TypingCheckpoint.CHUNK_SIZE - 1) + 4);
+    }
+
+    /**
+     * Plans the whole text, saves after {@code typed} plan characters, then resumes and checks that the rest of the
+     * text is planned from the expected character and byte offset.
+     */
+    private void assertResumesAt(String text, long typed, long character, long bytes) throws IOException {
+        Path path = directory.resolve("input.txt");
+        Files.writeString(path, text, StandardCharsets.UTF_8);
+        try (FileChannel file = FileChannel.open(path)) {
+            TypingCheckpoint checkpoint = TypingCheckpoint.open(path, file, false);
+            plan(checkpoint);
+            checkpoint.stop(typed);
+            assertEquals(character, checkpoint.typedCharacter(), "Character offset after " + typed);
+        }
+        try (FileChannel file = FileChannel.open(path)) {
+            TypingCheckpoint resumed = TypingCheckpoint.open(path, file, true);
+            assertEquals(bytes, resumed.startByte(), "Byte offset after " + typed);
+            assertEquals(character, resumed.startCharacter(), "Character offset after " + typed);
+            assertEquals(events(KeystrokeCompiler.UNICODE.compile(text.substring((int) character))), events(plan(resumed)));
+        }
+    }
+
+    private static List<KeystrokePlan> plan(TypingCheckpoint checkpoint) throws IOException {
+        List<KeystrokePlan> plans = new ArrayList<>();
+        checkpoint.source().plan(KeystrokeCompiler.UNICODE, plans::add);
+        return plans;
+    }
+
+    private static List<Integer> events(KeystrokePlan plan) {
+        return events(List.of(plan));
+    }
+
+    private static List<Integer> events(List<KeystrokePlan> plans) {
+        List<Integer> events = new ArrayList<>();
+        for (KeystrokePlan plan : plans) {
+            for (int event : plan.events()) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+}
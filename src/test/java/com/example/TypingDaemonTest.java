@@ -0,0 +1,268 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TypingDaemonTest {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog";
+    private static final int TARGETS = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void typesJobsForOneTargetInOrderWhateverTheirPacing() throws Exception {
+        List<Object> dispatches = Collections.synchronizedList(new ArrayList<>());
+        Path socket = directory.resolve("daemon.sock");
+        TypingDaemon daemon = new TypingDaemon(socket, options -> new Timed(Pacer.ofRate(400), dispatches), TypingDaemonTest::target);
+        Thread accept = accept(daemon);
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> send(socket, "--target a --delay 1", TEXT));
+            CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> send(socket, "--target a --delay 2", TEXT));
+            assertEquals("OK " + TEXT.length(), first.get(10, TimeUnit.SECONDS));
+            assertEquals("OK " + TEXT.length(), second.get(10, TimeUnit.SECONDS));
+        } finally {
+            daemon.close();
+            accept.join();
+        }
+
+        int switches = 0;
+        for (int i = 1; i < dispatches.size(); i++) {
+            if (dispatches.get(i) != dispatches.get(i - 1)) switches++;
+        }
+        assertEquals(1, switches, "The second job starts once the first has finished");
+    }
+
+    @Test
+    void typesJobsForDifferentTargetsInParallel() throws Exception {
+        List<Object> dispatches = Collections.synchronizedList(new ArrayList<>());
+        typeConcurrently(options -> new Timed(Pacer.ofRate(200), dispatches), dispatches, null);
+        assertInterleaved(dispatches);
+    }
+
+    @Test
+    void servesOtherClientsWhileOneStallsBeforeItsOptionLine() throws Exception {
+        Path socket = directory.resolve("daemon.sock");
+        TypingDaemon daemon = new TypingDaemon(socket, options -> new Timed(Pacer.unpaced(), new ArrayList<>()), TypingDaemonTest::target);
+        Thread accept = accept(daemon);
+        try (SocketChannel stalled = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            stalled.write(StandardCharsets.UTF_8.encode("--target a")); // And never the newline
+            CompletableFuture<String> reply = CompletableFuture.supplyAsync(() -> send(socket, "--target a", TEXT));
+            assertEquals("OK " + TEXT.length(), reply.get(5, TimeUnit.SECONDS));
+        } finally {
+            daemon.close();
+            accept.join();
+        }
+    }
+
+    @Test
+    void scalesAcrossXvfbDisplays() throws Exception {
+        assumeTrue(Xvfb.isInstalled(), "Xvfb is not installed");
+        List<Xvfb> servers = new ArrayList<>();
+        try {
+            for (int i = 0; i < TARGETS; i++) {
+                servers.add(Xvfb.start());
+            }
+            List<Object> dispatches = Collections.synchronizedList(new ArrayList<>());
+            Function<String[], KeystrokeStrategy> strategies = options -> {
+                String display = target(options);
+                return new Recorded(new XTestKeystroke(Pacer.ofRate(200), display.isEmpty() ? servers.get(0).display() : display), dispatches);
+            };
+            typeConcurrently(strategies, dispatches, servers);
+            assertInterleaved(dispatches);
+        } finally {
+            servers.forEach(Xvfb::close);
+        }
+    }
+
+    /**
+     * Sends one job per target at once, each from its own client thread, through a fresh daemon. Only the
+     * dispatches of those jobs are left in the list.
+     */
+    private void typeConcurrently(Function<String[], KeystrokeStrategy> strategies, List<Object> dispatches,
+                                  List<Xvfb> servers) throws Exception {
+        Path socket = directory.resolve("daemon.sock");
+        TypingDaemon daemon = new TypingDaemon(socket, strategies, TypingDaemonTest::target);
+        Thread accept = accept(daemon);
+        ExecutorService clients = Executors.newFixedThreadPool(TARGETS);
+        try {
+            for (int i = 0; i < TARGETS; i++) { // Create every backend first
+                assertEquals("OK 1", send(socket, "--target " + name(i, servers), "x"));
+            }
+            dispatches.clear();
+            List<CompletableFuture<String>> replies = new ArrayList<>();
+            for (int i = 0; i < TARGETS; i++) {
+                String header = "--target " + name(i, servers);
+                replies.add(CompletableFuture.supplyAsync(() -> send(socket, header, TEXT), clients));
+            }
+            for (CompletableFuture<String> reply : replies) {
+                assertEquals("OK " + TEXT.length(), reply.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            clients.shutdownNow();
+            daemon.close();
+            accept.join();
+        }
+    }
+
+    /**
+     * Checks that every target dispatched before any of them was done, so no target waited for another.
+     */
+    private static void assertInterleaved(List<Object> dispatches) {
+        Map<Object, Integer> first = new HashMap<>();
+        Map<Object, Integer> last = new HashMap<>();
+        for (int i = 0; i < dispatches.size(); i++) {
+            first.putIfAbsent(dispatches.get(i), i);
+            last.put(dispatches.get(i), i);
+        }
+        assertEquals(TARGETS, first.size(), "Every target dispatched");
+        int lastStarted = Collections.max(first.values());
+        int firstDone = Collections.min(last.values());
+        assertTrue(lastStarted < firstDone, "Every target started before any finished: " + first + ", " + last);
+    }
+
+    private static String name(int target, List<Xvfb> servers) {
+        return servers != null ? servers.get(target).display() : "t" + target;
+    }
+
+    private static String target(String[] options) {
+        for (int i = 0; i < options.length - 1; i++) {
+            if ("--target".equals(options[i])) return options[i + 1];
+        }
+        return "";
+    }
+
+    private static Thread accept(TypingDaemon daemon) {
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static String send(Path socket, String header, String text) {
+        try (SocketChannel connection = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            connection.write(StandardCharsets.UTF_8.encode(header + "\n" + text));
+            connection.shutdownOutput();
+            ByteBuffer reply = ByteBuffer.allocate(256);
+            while (connection.read(reply) >= 0) {
+                // Read until the daemon closes the connection
+            }
+            reply.flip();
+            return StandardCharsets.UTF_8.decode(reply).toString().trim();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records when a backend starts and ends replaying each plan, to see how jobs for different displays overlap.
+     */
+    private static final class Recorded implements KeystrokeStrategy, AutoCloseable {
+
+        private final XTestKeystroke target;
+        private final List<Object> dispatches;
+
+        Recorded(XTestKeystroke target, List<Object> dispatches) {
+            this.target = target;
+            this.dispatches = dispatches;
+        }
+
+        @Override
+        public KeystrokeCompiler compiler() {
+            return target.compiler();
+        }
+
+        @Override
+        public void replay(KeystrokePlan plan) {
+            dispatches.add(this);
+            target.replay(plan);
+            dispatches.add(this);
+        }
+
+        @Override
+        public void startJob() {
+            target.startJob();
+        }
+
+        @Override
+        public void endJob() {
+            target.endJob();
+        }
+
+        @Override
+        public void dispatchEvent(int event) {
+            target.dispatchEvent(event);
+        }
+
+        @Override
+        public void close() {
+            target.close();
+        }
+    }
+
+    /**
+     * Paced backend that records which instance dispatched each character, in order.
+     */
+    private static final class Timed implements KeystrokeStrategy {
+
+        private final Pacer pacer;
+        private final List<Object> dispatches;
+        private final KeyEventBatch batch = new KeyEventBatch();
+
+        Timed(Pacer pacer, List<Object> dispatches) {
+            this.pacer = pacer;
+            this.dispatches = dispatches;
+        }
+
+        @Override
+        public void replay(KeystrokePlan plan) {
+            try {
+                KeyEventBatch.replay(this, plan, pacer, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void startJob() {
+            pacer.start();
+        }
+
+        @Override
+        public void dispatchEvent(int event) {
+            dispatches.add(this);
+        }
+
+        @Override
+        public void dispatch(KeyEventBatch events) {
+            dispatches.add(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TypingEngineTest {
+
+    @Test
+    void failsTheJobWhenTheBackendThrowsAnError() throws Exception {
+        KeystrokeStrategy working = new Backend(null);
+        try (TypingEngine engine = TypingEngine.start(null)) {
+            TypingJob failed = engine.submit(new Backend(new UnsatisfiedLinkError("Unable to load library")), (compiler, sink) -> StreamingInput.plan(compiler, "hello", sink));
+            TypingJob next = engine.submit(working, (compiler, sink) -> StreamingInput.plan(compiler, "hello", sink));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UnsatisfiedLinkError.class, e.getCause());
+            assertEquals(Long.valueOf(5), next.get(5, TimeUnit.SECONDS), "The dispatcher survives the error");
+        }
+    }
+
+    @Test
+    void failsTheJobWhenPlanningThrowsAnError() throws Exception {
+        try (TypingEngine engine = TypingEngine.start(new Backend(null))) {
+            TypingJob failed = engine.submit((compiler, sink) -> {
+                throw new StackOverflowError();
+            });
+            TypingJob next = engine.submit("hello");
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(StackOverflowError.class, e.getCause());
+            assertEquals(Long.valueOf(5), next.get(5, TimeUnit.SECONDS), "The planner survives the error");
+        }
+    }
+
+    @Test
+    void endsEveryStartedJobOnce() throws Exception {
+        Backend backend = new Backend(null);
+        CompletableFuture<Void> cancelled = new CompletableFuture<>();
+        try (TypingEngine engine = TypingEngine.start(backend)) {
+            engine.submit("hello").get(5, TimeUnit.SECONDS);
+            TypingJob stopped = engine.submit((compiler, sink) -> {
+                StreamingInput.plan(compiler, "first", sink);
+                cancelled.join();
+                StreamingInput.plan(compiler, "second", sink);
+            });
+            backend.replayed.await(5, TimeUnit.SECONDS);
+            stopped.cancel(true);
+            cancelled.complete(null);
+            engine.submit("bye").get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(3, backend.started);
+        assertEquals(3, backend.ended);
+    }
+
+    /**
+     * Types nothing, or throws the given error from every replay, and counts the jobs it starts and ends.
+     */
+    private static final class Backend implements KeystrokeStrategy {
+
+        private final Error error;
+        private final CountDownLatch replayed = new CountDownLatch(2);
+        private int started;
+        private int ended;
+
+        Backend(Error error) {
+            this.error = error;
+        }
+
+        @Override
+        public void replay(KeystrokePlan plan) {
+            if (error != null) throw error;
+            replayed.countDown();
+        }
+
+        @Override
+        public void startJob() {
+            started++;
+        }
+
+        @Override
+        public void endJob() {
+            ended++;
+        }
+
+        @Override
+        public void dispatchEvent(int event) {
+            // Types nothing
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example;
+
+import com.sun.jna.Native;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UinputKeystrokeTest {
+
+    private static final long CLOCK_MICROS = 1_700_000_000_123_456L;
+    private static final int KEY_A = 30;
+
+    @Test
+    void writesAKeyEventAndASynReportPerKey() {
+        ByteBuffer events = type("aA");
+
+        int[][] expected = {
+                {KEY_A, 1}, {KEY_A, 0},
+                {UinputKeystroke.KEY_LEFTSHIFT, 1}, {KEY_A, 1}, {KEY_A, 0}, {UinputKeystroke.KEY_LEFTSHIFT, 0},
+        };
+        assertEquals(expected.length * 2 * UinputKeystroke.EVENT_SIZE, events.remaining());
+        for (int[] key : expected) {
+            assertEvent(events, UinputKeystroke.EV_KEY, key[0], key[1]);
+            assertEvent(events, UinputKeystroke.EV_SYN, UinputKeystroke.SYN_REPORT, 0);
+        }
+    }
+
+    @Test
+    void sizesTheTimevalToTheNativeLong() {
+        ByteBuffer events = type("a");
+
+        assertEquals(Native.LONG_SIZE == 8 ? 24 : 16, UinputKeystroke.EVENT_SIZE);
+        assertEquals(4 * UinputKeystroke.EVENT_SIZE, events.remaining());
+    }
+
+    /**
+     * Types the text into an in-memory device and returns the written records in native byte order.
+     */
+    private static ByteBuffer type(String text) {
+        ByteArrayOutputStream device = new ByteArrayOutputStream();
+        UinputKeystroke keystroke = new UinputKeystroke(Pacer.unpaced(), KeyLayout.US, Channels.newChannel(device), () -> CLOCK_MICROS);
+        keystroke.simulateTyping(text);
+        return ByteBuffer.wrap(device.toByteArray()).order(ByteOrder.nativeOrder());
+    }
+
+    private static void assertEvent(ByteBuffer events, int type, int code, int value) {
+        long seconds = Native.LONG_SIZE == 8 ? events.getLong() : events.getInt();
+        long micros = Native.LONG_SIZE == 8 ? events.getLong() : events.getInt();
+        assertEquals(CLOCK_MICROS / 1_000_000, seconds, "tv_sec");
+        assertEquals(CLOCK_MICROS % 1_000_000, micros, "tv_usec");
+        assertEquals(type, events.getShort(), "type");
+        assertEquals(code, events.getShort(), "code");
+        assertEquals(value, events.getInt(), "value");
+    }
+}
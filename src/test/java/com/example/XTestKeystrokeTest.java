@@ -0,0 +1,63 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class XTestKeystrokeTest {
+
+    @Test
+    void keysymTableKeepsTheFirstEntryOfEachKeysym() {
+        long[] keysyms = {'b', 'a', 'A', 'a', XTestKeystroke.XK_Return};
+        int[] entries = {56, 38, 38 | KeyLayout.SHIFT, 99, 36};
+        XTestKeystroke.KeysymTable table = new XTestKeystroke.KeysymTable(keysyms, entries, keysyms.length);
+
+        assertEquals(4, table.size());
+        assertEquals(38, table.get('a'));
+        assertEquals(38 | KeyLayout.SHIFT, table.get('A'));
+        assertEquals(56, table.get('b'));
+        assertEquals(36, table.get(XTestKeystroke.XK_Return));
+        assertEquals(KeyLayout.UNMAPPED, table.get('c'));
+    }
+
+    @Test
+    void fingerprintsTheKeyboardMapping() {
+        long[] keysyms = {'a', 'b'};
+        XTestKeystroke.KeysymTable table = new XTestKeystroke.KeysymTable(keysyms, new int[]{38, 56}, 2);
+        XTestKeystroke.KeysymTable same = new XTestKeystroke.KeysymTable(keysyms, new int[]{38, 56}, 2);
+        XTestKeystroke.KeysymTable swapped = new XTestKeystroke.KeysymTable(keysyms, new int[]{56, 38}, 2);
+
+        assertEquals(table.fingerprint(), same.fingerprint());
+        assertNotEquals(table.fingerprint(), swapped.fingerprint());
+    }
+
+    @Test
+    void mapsCodePointsToKeysyms() {
+        assertEquals('a', XTestKeystroke.keysymForCodePoint('a'));
+        assertEquals(0xe9, XTestKeystroke.keysymForCodePoint('é'));
+        assertEquals(XTestKeystroke.XK_Return, XTestKeystroke.keysymForCodePoint('\n'));
+        assertEquals(XTestKeystroke.XK_Tab, XTestKeystroke.keysymForCodePoint('\t'));
+        assertEquals(0x010020ac, XTestKeystroke.keysymForCodePoint('€'));
+        assertEquals(0, XTestKeystroke.keysymForCodePoint(0x07));
+    }
+
+    @Test
+    void typesIntoXvfb() throws Exception {
+        assumeTrue(Xvfb.isInstalled(), "Xvfb is not installed");
+        try (Xvfb xvfb = Xvfb.start(); XTestKeystroke keys = new XTestKeystroke(Pacer.unpaced(), xvfb.display())) {
+            KeystrokePlan plan = keys.compile("Hello, World!\n");
+            assertEquals(14, plan.characterCount());
+            assertEquals(KeystrokePlan.OP_PRESS, KeystrokePlan.op(plan.event(0)));
+            assertEquals(keys.compiler().shiftKeyCode(), KeystrokePlan.operand(plan.event(0))); // Shift for the H
+            assertTrue(keys.compiler().keyCodeFor(KeyEvent.VK_DOWN) > 0);
+
+            keys.replay(plan);
+            assertTrue(keys.syncNanos() >= 0, "The server processed the events");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the unpaced event throughput of the XTest and Robot backends on the X display named by
+ * {@code DISPLAY}. Intended to be run headless, for example under {@code xvfb-run}.
+ */
+public class XTestThroughputComparison {
+
+    private static final String SAMPLE = "HelloBase64Test+/=abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    /**
+     * Main method to run the comparison.
+     *
+     * @param args Optional number of characters to type per backend (default: 20000).
+     */
+    public static void main(String[] args) {
+        int characters = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        String text = SAMPLE.repeat(characters / SAMPLE.length() + 1).substring(0, characters);
+
+        double robotRate = measure("Robot", new RobotKeystroke(Pacer.unpaced()), text);
+        double xtestRate;
+        try (XTestKeystroke xtest = new XTestKeystroke(Pacer.unpaced())) {
+            xtestRate = measure("XTest", xtest, text);
+        }
+        System.out.printf("XTest / Robot: %.2fx%n", xtestRate / robotRate);
+    }
+
+    private static double measure(String name, KeystrokeStrategy strategy, String text) {
+        KeystrokePlan plan = strategy.compile(text);
+        strategy.replay(strategy.compile(text.substring(0, Math.min(text.length(), 1000)))); // Warm up
+
+        long start = System.nanoTime();
+        strategy.replay(plan);
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        double rate = plan.size() / seconds;
+        System.out.printf("%-6s %,d events in %.3f s (%,.0f events/s)%n", name, plan.size(), seconds, rate);
+        return rate;
+    }
+}
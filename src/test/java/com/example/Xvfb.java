@@ -0,0 +1,90 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A private Xvfb server on the first free display, for tests that need an X server without touching the desktop.
+ */
+final class Xvfb implements AutoCloseable {
+
+    private static final int FIRST_DISPLAY = 90;
+    private static final long START_TIMEOUT_MILLIS = 10_000;
+
+    private final Process process;
+    private final String display;
+
+    private Xvfb(Process process, String display) {
+        this.process = process;
+        this.display = display;
+    }
+
+    /**
+     * @return True if an {@code Xvfb} executable is on the {@code PATH}.
+     */
+    static boolean isInstalled() {
+        String path = System.getenv("PATH");
+        if (path == null) return false;
+        for (String directory : path.split(File.pathSeparator)) {
+            if (Files.isExecutable(Paths.get(directory, "Xvfb"))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts Xvfb and waits until it accepts connections.
+     */
+    static Xvfb start() throws IOException, InterruptedException {
+        String display = freeDisplay();
+        Process process = new ProcessBuilder("Xvfb", display, "-screen", "0", "1280x1024x24", "-nolisten", "tcp")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        Path socket = socketFor(Integer.parseInt(display.substring(1)));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_TIMEOUT_MILLIS);
+        while (!Files.exists(socket)) {
+            if (!process.isAlive()) throw new IOException("Xvfb exited with " + process.exitValue());
+            if (System.nanoTime() > deadline) {
+                process.destroy();
+                throw new IOException("Xvfb did not start on " + display);
+            }
+            Thread.sleep(50);
+        }
+        return new Xvfb(process, display);
+    }
+
+    /**
+     * @return The display name, such as {@code :90}.
+     */
+    String display() {
+        return display;
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the first display number with neither an X server socket nor a lock file.
+     */
+    private static String freeDisplay() {
+        for (int number = FIRST_DISPLAY; number < FIRST_DISPLAY + 100; number++) {
+            if (!Files.exists(socketFor(number)) && !Files.exists(Paths.get("/tmp/.X" + number + "-lock"))) return ":" + number;
+        }
+        throw new IllegalStateException("No free X display number");
+    }
+
+    private static Path socketFor(int number) {
+        return Paths.get("/tmp/.X11-unix/X" + number);
+    }
+}